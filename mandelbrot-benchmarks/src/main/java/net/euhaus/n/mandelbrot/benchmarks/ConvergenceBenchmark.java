@@ -0,0 +1,81 @@
+package net.euhaus.n.mandelbrot.benchmarks;
+
+import net.euhaus.n.mandelbrot.BigComplex;
+import net.euhaus.n.mandelbrot.Mandelbrot;
+import net.euhaus.n.mandelbrot.MandelbrotPerturbation;
+import org.apache.commons.math3.complex.Complex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single {@link Mandelbrot#getConvergence} call, averaged over a grid of points across each region.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class ConvergenceBenchmark {
+
+    private static final int GRID = 32;
+
+    private static final int POINTS = GRID * GRID;
+
+    @Param
+    private Region region;
+
+    private Mandelbrot<Object, Object> mandelbrot;
+
+    private Object[] points;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Mandelbrot<?, ?> view = region.create();
+        mandelbrot = (Mandelbrot<Object, Object>) view;
+        points = new Object[POINTS];
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                points[y * GRID + x] = point(view, x, y);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object point(Mandelbrot<?, ?> view, int x, int y) {
+        if (view instanceof MandelbrotPerturbation) {
+            MandelbrotPerturbation deep = (MandelbrotPerturbation) view;
+            BigDecimal size = BigDecimal.valueOf(GRID);
+            return new BigComplex(deep.rescaleToReal(BigDecimal.valueOf(x), BigDecimal.ZERO, size),
+                    deep.rescaleToImaginary(BigDecimal.valueOf(y), BigDecimal.ZERO, size));
+        }
+        Mandelbrot<Double, Complex> plain = (Mandelbrot<Double, Complex>) view;
+        return new Complex(plain.rescaleToReal((double) x, 0.0, (double) GRID),
+                plain.rescaleToImaginary((double) y, 0.0, (double) GRID));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long getConvergence() {
+        long sum = 0;
+        for (Object point : points) {
+            sum += mandelbrot.getConvergence(point);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.euhaus.n.mandelbrot.benchmarks;
+
+import net.euhaus.n.mandelbrot.EscapeTimeKernel;
+import net.euhaus.n.mandelbrot.Formula;
+import net.euhaus.n.mandelbrot.FormulaKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@code z^2 + c} orbit over a grid in Seahorse Valley with the hand-written {@link EscapeTimeKernel}, the
+ * runtime-compiled {@link FormulaKernel} and the interpreted one. Every orbit starts at {@code z = c} in step 1, which
+ * skips the cardioid test that only the hand-written kernel has, so all three do the same iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class FormulaBenchmark {
+
+    private static final int GRID = 32;
+
+    private static final int POINTS = GRID * GRID;
+
+    private static final int MAX_STEPS = 2000;
+
+    public enum Kernel {
+        HAND_WRITTEN, COMPILED, INTERPRETED
+    }
+
+    @Param
+    private Kernel kernel;
+
+    private FormulaKernel formulaKernel;
+
+    private double[] real;
+
+    private double[] imaginary;
+
+    @Setup
+    public void setUp() {
+        formulaKernel = kernel == Kernel.INTERPRETED
+                ? FormulaKernel.interpreted(Formula.MANDELBROT)
+                : FormulaKernel.compiled(Formula.MANDELBROT);
+        real = new double[POINTS];
+        imaginary = new double[POINTS];
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                real[y * GRID + x] = -0.75 + 0.01 * x / GRID;
+                imaginary[y * GRID + x] = 0.1 + 0.01 * y / GRID;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long iterate() {
+        long sum = 0;
+        if (kernel == Kernel.HAND_WRITTEN) {
+            for (int i = 0; i < POINTS; i++) {
+                sum += EscapeTimeKernel.iterate(real[i], imaginary[i], real[i], imaginary[i], 1, MAX_STEPS);
+            }
+        } else {
+            for (int i = 0; i < POINTS; i++) {
+                sum += formulaKernel.iterate(real[i], imaginary[i], real[i], imaginary[i], 1, MAX_STEPS, null, 0);
+            }
+        }
+        return sum;
+    }
+
+}
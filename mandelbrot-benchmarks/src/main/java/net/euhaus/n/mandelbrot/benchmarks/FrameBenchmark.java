@@ -0,0 +1,74 @@
+package net.euhaus.n.mandelbrot.benchmarks;
+
+import net.euhaus.n.mandelbrot.Mandelbrot;
+import net.euhaus.n.mandelbrot.RenderMode;
+import net.euhaus.n.mandelbrot.TileScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to produce the iteration buffer of a whole frame, on one thread through
+ * {@link Mandelbrot#fillConvergence} and on all cores through the {@link TileScheduler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class FrameBenchmark {
+
+    @Param
+    private Region region;
+
+    @Param({"200", "800", "1600"})
+    private int resolution;
+
+    @Param({"PER_PIXEL", "BOUNDARY_TRACING"})
+    private RenderMode mode;
+
+    private Mandelbrot<?, ?> mandelbrot;
+
+    private TileScheduler tileScheduler;
+
+    private int[] steps;
+
+    @Setup
+    public void setUp() {
+        mandelbrot = region.create();
+        tileScheduler = new TileScheduler();
+        steps = new int[resolution * resolution];
+    }
+
+    @TearDown
+    public void tearDown() {
+        tileScheduler.shutdown();
+    }
+
+    // fillConvergence always computes every pixel, so this is the per-pixel baseline whatever the mode parameter.
+    @Benchmark
+    public int[] singleThread() {
+        mandelbrot.fillConvergence(steps, 0, resolution, 0, 0, resolution, resolution, resolution, resolution);
+        return steps;
+    }
+
+    @Benchmark
+    public int[] tileScheduler() {
+        tileScheduler.render(mandelbrot, steps, 0, 0, resolution, resolution, resolution, resolution, mode,
+                () -> false);
+        return steps;
+    }
+
+}
@@ -0,0 +1,69 @@
+package net.euhaus.n.mandelbrot.benchmarks;
+
+import net.euhaus.n.mandelbrot.Palette;
+import net.euhaus.n.mandelbrot.PngStreamWriter;
+import net.euhaus.n.mandelbrot.TileScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stage after iteration: mapping counts to ARGB pixels, and encoding them as PNG.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+public class PixelOutputBenchmark {
+
+    @Param({"SEAHORSE_VALLEY", "FULL_SET"})
+    private Region region;
+
+    @Param({"800", "1600"})
+    private int resolution;
+
+    private int[] steps;
+
+    private int[] argb;
+
+    @Setup
+    public void setUp() {
+        TileScheduler tileScheduler = new TileScheduler();
+        try {
+            steps = tileScheduler.render(region.create(), resolution, resolution);
+        } finally {
+            tileScheduler.shutdown();
+        }
+        argb = new int[steps.length];
+    }
+
+    @Benchmark
+    public int[] palette() {
+        Palette.INFERNO.toArgb(steps, 0, argb, 0, steps.length);
+        return argb;
+    }
+
+    @Benchmark
+    public void png() throws IOException {
+        try (PngStreamWriter png = new PngStreamWriter(OutputStream.nullOutputStream(), resolution, resolution)) {
+            for (int y = 0; y < resolution; y++) {
+                png.writeRow(argb, y * resolution);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.euhaus.n.mandelbrot.benchmarks;
+
+import net.euhaus.n.mandelbrot.Mandelbrot;
+import net.euhaus.n.mandelbrot.MandelbrotIEEE754;
+import net.euhaus.n.mandelbrot.MandelbrotPerturbation;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Fixed square views with very different cost profiles.
+ */
+public enum Region {
+
+    /**
+     * The default view; dominated by interior points.
+     */
+    FULL_SET("-0.5", "0", "3"),
+
+    /**
+     * Boundary detail with a wide spread of counts.
+     */
+    SEAHORSE_VALLEY("-0.745", "0.113", "0.01"),
+
+    /**
+     * Almost every point escapes within a few iterations.
+     */
+    EXTERIOR("0.6", "1.0", "0.8"),
+
+    /**
+     * Far below double precision, rendered with the perturbation engine.
+     */
+    DEEP_ZOOM("-0.743643887037158704752191506114774", "0.131825904205311970493132056385139", "1e-30");
+
+    // Narrowest view that plain doubles still resolve.
+    private static final BigDecimal DOUBLE_LIMIT = new BigDecimal("1e-13");
+
+    private final BigDecimal centerR;
+
+    private final BigDecimal centerIm;
+
+    private final BigDecimal span;
+
+    Region(String centerR, String centerIm, String span) {
+        this.centerR = new BigDecimal(centerR);
+        this.centerIm = new BigDecimal(centerIm);
+        this.span = new BigDecimal(span);
+    }
+
+    public Mandelbrot<?, ?> create() {
+        BigDecimal half = span.divide(BigDecimal.valueOf(2), MathContext.DECIMAL128);
+        BigDecimal minR = centerR.subtract(half);
+        BigDecimal maxR = centerR.add(half);
+        BigDecimal minIm = centerIm.subtract(half);
+        BigDecimal maxIm = centerIm.add(half);
+        if (span.compareTo(DOUBLE_LIMIT) < 0) {
+            return new MandelbrotPerturbation(minR, maxR, minIm, maxIm);
+        }
+        return new MandelbrotIEEE754(minR.doubleValue(), maxR.doubleValue(), minIm.doubleValue(), maxIm.doubleValue());
+    }
+
+}
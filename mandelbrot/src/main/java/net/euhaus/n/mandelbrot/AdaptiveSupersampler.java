@@ -0,0 +1,273 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Anti-aliases a frame that was rendered with one sample per pixel by supersampling only where it is needed.
+ *
+ * A pixel is refined when its smooth count differs from a horizontal or vertical neighbour's by more than a
+ * threshold, or when exactly one of the two is inside the set. Its own sample is the top left cell of an
+ * {@code n x n} grid over the pixel; refining first samples the top left cell of each other quadrant of that grid,
+ * and only if these four samples still differ by more than the threshold the remaining cells as well. Each sample
+ * lies at a jittered position within its cell. Flat regions keep their single sample and smooth gradients four, so
+ * the cost grows with the length of the boundary instead of the area.
+ *
+ * Samples are pixels of a view {@value #JITTER} times finer than the {@code n x n} grid, computed by the frame's own
+ * engine, so every engine supports it. The jitter is seeded by the pixel, which makes the result reproducible.
+ */
+public class AdaptiveSupersampler {
+
+    public static final int MAX_GRID = 8;
+
+    // In iterations; with the default palettes one iteration is one of about 256 colors.
+    public static final double DEFAULT_THRESHOLD = 4.0;
+
+    // Positions a jittered sample can take within its cell, along each axis.
+    private static final int JITTER = 16;
+
+    private final TileScheduler tileScheduler;
+
+    private final int grid;
+
+    private final double threshold;
+
+    // Cells sampled first besides the pixel's own, then the remaining ones, as y * grid + x.
+    private final int[] coarseCells;
+
+    private final int[] fineCells;
+
+    public AdaptiveSupersampler(TileScheduler tileScheduler, int grid) {
+        this(tileScheduler, grid, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Refines pixels with up to {@code grid x grid} samples where the smooth counts of neighbours differ by more
+     * than {@code threshold} iterations.
+     */
+    public AdaptiveSupersampler(TileScheduler tileScheduler, int grid, double threshold) {
+        if (grid < 2 || grid > MAX_GRID) {
+            throw new IllegalArgumentException("supersampling grid must be between 2 and " + MAX_GRID + ": " + grid);
+        }
+        if (!(threshold >= 0.0)) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        this.tileScheduler = tileScheduler;
+        this.grid = grid;
+        this.threshold = threshold;
+        int half = grid / 2;
+        this.coarseCells = new int[]{half, half * grid, half * grid + half};
+        this.fineCells = new int[grid * grid - 4];
+        for (int cell = 1, i = 0; cell < grid * grid; cell++) {
+            if (cell != coarseCells[0] && cell != coarseCells[1] && cell != coarseCells[2]) {
+                fineCells[i++] = cell;
+            }
+        }
+    }
+
+    public int getGrid() {
+        return grid;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public Supersamples refine(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int width, int height,
+                               BooleanSupplier cancelled) {
+        return refine(view, steps, fractions, width, height, null, 0, 0, cancelled);
+    }
+
+    /**
+     * Computes the extra samples of the complete {@code width x height} frame {@code steps} and {@code fractions} of
+     * {@code view}. Pixels that already have samples of the same grid in {@code previous}, unless that is
+     * {@code null}, at pixel {@code (x + dx, y + dy)} take those over, see {@link IncrementalRenderer}. The result is
+     * incomplete if {@code cancelled} turned true meanwhile.
+     */
+    public Supersamples refine(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int width, int height,
+                               RenderJob previous, int dx, int dy, BooleanSupplier cancelled) {
+        int resolution = grid * JITTER;
+        if ((long) width * resolution > Integer.MAX_VALUE || (long) height * resolution > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("frame too large to supersample: " + width + "x" + height);
+        }
+        int maxSteps = view.getMaxSteps();
+        int[] pixels = boundaryPixels(steps, fractions, width, height, maxSteps);
+        Supersamples reusable = previous == null ? null : previous.getSupersamples();
+        if (reusable != null && reusable.getGrid() != grid) {
+            reusable = null;
+        }
+        int[] sources = new int[pixels.length];
+        for (int p = 0; p < pixels.length; p++) {
+            sources[p] = reusable == null ? -1 : sourceOf(reusable, previous, pixels[p] % width + dx,
+                    pixels[p] / width + dy);
+        }
+
+        Samples coarse = new Samples(pixels.length * coarseCells.length);
+        for (int p = 0; p < pixels.length; p++) {
+            if (sources[p] < 0) {
+                coarse.add(pixels[p], coarseCells, width);
+            }
+        }
+        coarse.compute(view, width, height, cancelled);
+
+        Samples fine = new Samples(0);
+        boolean[] refined = new boolean[pixels.length];
+        if (fineCells.length > 0) {
+            int count = 0;
+            for (int p = 0, c = 0; p < pixels.length; p++) {
+                if (sources[p] < 0) {
+                    refined[p] = uneven(steps[pixels[p]], fractions == null ? 0.0f : fractions[pixels[p]],
+                            coarse, c, maxSteps);
+                    count += refined[p] ? 1 : 0;
+                    c += coarseCells.length;
+                }
+            }
+            fine = new Samples(count * fineCells.length);
+            for (int p = 0; p < pixels.length; p++) {
+                if (refined[p]) {
+                    fine.add(pixels[p], fineCells, width);
+                }
+            }
+            fine.compute(view, width, height, cancelled);
+        }
+
+        int[] offsets = new int[pixels.length + 1];
+        for (int p = 0; p < pixels.length; p++) {
+            int length;
+            if (sources[p] >= 0) {
+                length = reusable.getOffsets()[sources[p] + 1] - reusable.getOffsets()[sources[p]];
+            } else {
+                length = coarseCells.length + (refined[p] ? fineCells.length : 0);
+            }
+            offsets[p + 1] = offsets[p] + length;
+        }
+        int[] sampleSteps = new int[offsets[pixels.length]];
+        float[] sampleFractions = new float[sampleSteps.length];
+        for (int p = 0, c = 0, f = 0; p < pixels.length; p++) {
+            int to = offsets[p];
+            if (sources[p] >= 0) {
+                int from = reusable.getOffsets()[sources[p]];
+                System.arraycopy(reusable.getSteps(), from, sampleSteps, to, offsets[p + 1] - to);
+                System.arraycopy(reusable.getFractions(), from, sampleFractions, to, offsets[p + 1] - to);
+                continue;
+            }
+            System.arraycopy(coarse.steps, c, sampleSteps, to, coarseCells.length);
+            System.arraycopy(coarse.fractions, c, sampleFractions, to, coarseCells.length);
+            c += coarseCells.length;
+            if (refined[p]) {
+                to += coarseCells.length;
+                System.arraycopy(fine.steps, f, sampleSteps, to, fineCells.length);
+                System.arraycopy(fine.fractions, f, sampleFractions, to, fineCells.length);
+                f += fineCells.length;
+            }
+        }
+        return new Supersamples(grid, pixels, offsets, sampleSteps, sampleFractions);
+    }
+
+    // Whether the pixel's own sample and its coarse samples from index from on differ beyond the threshold.
+    private boolean uneven(int step, float fraction, Samples coarse, int from, int maxSteps) {
+        for (int i = from; i < from + coarseCells.length; i++) {
+            if (differ(step, fraction, coarse.steps[i], coarse.fractions[i], maxSteps)) {
+                return true;
+            }
+            for (int j = i + 1; j < from + coarseCells.length; j++) {
+                if (differ(coarse.steps[i], coarse.fractions[i], coarse.steps[j], coarse.fractions[j], maxSteps)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int sourceOf(Supersamples reusable, RenderJob previous, int x, int y) {
+        if (x < 0 || y < 0 || x >= previous.getWidth() || y >= previous.getHeight()) {
+            return -1;
+        }
+        return reusable.indexOf(y * previous.getWidth() + x);
+    }
+
+    // Indices of the pixels to refine, in ascending order.
+    private int[] boundaryPixels(int[] steps, float[] fractions, int width, int height, int maxSteps) {
+        boolean[] marked = new boolean[width * height];
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                if (x + 1 < width && differ(steps, fractions, i, i + 1, maxSteps)) {
+                    count += mark(marked, i) + mark(marked, i + 1);
+                }
+                if (y + 1 < height && differ(steps, fractions, i, i + width, maxSteps)) {
+                    count += mark(marked, i) + mark(marked, i + width);
+                }
+            }
+        }
+        int[] pixels = new int[count];
+        for (int i = 0, p = 0; p < count; i++) {
+            if (marked[i]) {
+                pixels[p++] = i;
+            }
+        }
+        return pixels;
+    }
+
+    private static int mark(boolean[] marked, int index) {
+        if (marked[index]) {
+            return 0;
+        }
+        marked[index] = true;
+        return 1;
+    }
+
+    private boolean differ(int[] steps, float[] fractions, int a, int b, int maxSteps) {
+        return differ(steps[a], fractions == null ? 0.0f : fractions[a], steps[b],
+                fractions == null ? 0.0f : fractions[b], maxSteps);
+    }
+
+    private boolean differ(int stepA, float fractionA, int stepB, float fractionB, int maxSteps) {
+        boolean insideA = stepA >= maxSteps;
+        boolean insideB = stepB >= maxSteps;
+        if (insideA || insideB) {
+            return insideA != insideB;
+        }
+        return Math.abs(stepA - stepB + (fractionA - fractionB)) > threshold;
+    }
+
+    // Sample positions of the cells of refined pixels, with their results.
+    private class Samples {
+
+        private final int[] xs;
+
+        private final int[] ys;
+
+        private final int[] steps;
+
+        private final float[] fractions;
+
+        private int count;
+
+        Samples(int capacity) {
+            xs = new int[capacity];
+            ys = new int[capacity];
+            steps = new int[capacity];
+            fractions = new float[capacity];
+        }
+
+        void add(int pixel, int[] cells, int width) {
+            int resolution = grid * JITTER;
+            int x = pixel % width;
+            int y = pixel / width;
+            for (int cell : cells) {
+                SplittableRandom random = new SplittableRandom((long) pixel * MAX_GRID * MAX_GRID + cell);
+                xs[count] = x * resolution + cell % grid * JITTER + random.nextInt(JITTER);
+                ys[count] = y * resolution + cell / grid * JITTER + random.nextInt(JITTER);
+                count++;
+            }
+        }
+
+        void compute(Mandelbrot<?, ?> view, int width, int height, BooleanSupplier cancelled) {
+            int resolution = grid * JITTER;
+            tileScheduler.renderPoints(view, steps, fractions, xs, ys, count, width * resolution,
+                    height * resolution, cancelled);
+        }
+    }
+
+}
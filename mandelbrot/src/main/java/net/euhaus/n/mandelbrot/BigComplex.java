@@ -0,0 +1,48 @@
+package net.euhaus.n.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Immutable arbitrary-precision complex number for {@link MandelbrotPerturbation}.
+ */
+public final class BigComplex {
+
+    public static final BigComplex ZERO = new BigComplex(BigDecimal.ZERO, BigDecimal.ZERO);
+
+    private final BigDecimal real;
+
+    private final BigDecimal imaginary;
+
+    public BigComplex(BigDecimal real, BigDecimal imaginary) {
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+    public BigDecimal getReal() {
+        return real;
+    }
+
+    public BigDecimal getImaginary() {
+        return imaginary;
+    }
+
+    /**
+     * Returns {@code this * this + c}.
+     */
+    public BigComplex squareAdd(BigComplex c, MathContext mc) {
+        BigDecimal re = real.multiply(real, mc).subtract(imaginary.multiply(imaginary, mc), mc).add(c.real, mc);
+        BigDecimal im = real.multiply(imaginary, mc).multiply(BigDecimal.valueOf(2), mc).add(c.imaginary, mc);
+        return new BigComplex(re, im);
+    }
+
+    public BigDecimal absSquared(MathContext mc) {
+        return real.multiply(real, mc).add(imaginary.multiply(imaginary, mc), mc);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + real + ", " + imaginary + ")";
+    }
+
+}
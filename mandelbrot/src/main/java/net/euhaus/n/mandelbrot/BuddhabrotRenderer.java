@@ -0,0 +1,235 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Renders the orbit density of escaping points, the Buddhabrot: random {@code c} are drawn uniformly from the disk of
+ * radius 2, and every {@code z} on the orbit of a {@code c} that escapes is counted in the pixel of the view it falls
+ * into.
+ *
+ * Samples are taken in batches that the workers claim one after the other. Each worker counts into a histogram of its
+ * own, so the hot loop increments a plain {@code int[]} without sharing or locking, and the histograms are added into
+ * the result when the worker runs out of batches or its counts could overflow. The memory is one {@code int} per pixel
+ * and worker on top of the {@code long} per pixel of the result.
+ *
+ * Every batch has its own random generator seeded from its index, so the result depends on the seed and the number
+ * of samples but not on the parallelism. Points in the main cardioid and the period-2 bulb never escape and are
+ * rejected before any iteration; the other samples are iterated once by {@link EscapeTimeKernel} to find their count,
+ * and only those that escape are iterated a second time to plot their orbit.
+ */
+public class BuddhabrotRenderer {
+
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private static final double SAMPLE_RADIUS = 2.0;
+
+    private final ForkJoinPool pool;
+
+    private final int parallelism;
+
+    private final int batchSize;
+
+    public BuddhabrotRenderer() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public BuddhabrotRenderer(int parallelism, int batchSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Draws {@code samples} points and returns how many orbit points fell into each pixel of a {@code width x height}
+     * image of {@code view}, row-major with the first row at {@link Mandelbrot#getMinIm()}. Orbits that escape in
+     * fewer than {@code minSteps} or do not escape within {@link Mandelbrot#getMaxSteps()} steps are not plotted.
+     *
+     * {@code onProgress} is called from the workers with the number of samples drawn so far after every batch.
+     * Batches that would start after {@code cancelled} turned true are skipped and the counts of the batches done so
+     * far are returned.
+     */
+    public long[] render(MandelbrotIEEE754 view, int width, int height, int minSteps, long samples, long seed,
+                         BooleanSupplier cancelled, LongConsumer onProgress) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("image must not be empty: " + width + "x" + height);
+        }
+        if (samples < 0) {
+            throw new IllegalArgumentException("number of samples must not be negative: " + samples);
+        }
+        double minR = view.getMinR();
+        double minIm = view.getMinIm();
+        double scaleR = width / (view.getMaxR() - minR);
+        double scaleIm = height / (view.getMaxIm() - minIm);
+        int maxSteps = view.getMaxSteps();
+        long batches = (samples + batchSize - 1) / batchSize;
+
+        long[] histogram = new long[width * height];
+        AtomicLong nextBatch = new AtomicLong();
+        AtomicLong drawn = new AtomicLong();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < (int) Math.min(parallelism, batches); i++) {
+            workers.add(() -> {
+                Worker worker = new Worker(histogram, width, height, minR, minIm, scaleR, scaleIm, minSteps, maxSteps);
+                for (long batch = nextBatch.getAndIncrement(); batch < batches && !cancelled.getAsBoolean();
+                     batch = nextBatch.getAndIncrement()) {
+                    long count = Math.min(batchSize, samples - batch * batchSize);
+                    worker.sample(new SplittableRandom(seed + batch), count);
+                    long total = drawn.addAndGet(count);
+                    if (onProgress != null) {
+                        onProgress.accept(total);
+                    }
+                }
+                worker.flush();
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(workers)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return histogram;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The count at the given quantile of the nonzero pixels, used as the white point of an image so that a few
+     * pixels on heavily visited orbits do not leave the rest dark; at least 1.
+     */
+    public static long peak(long[] histogram, double quantile) {
+        long[] counts = Arrays.stream(histogram).filter(count -> count > 0).toArray();
+        if (counts.length == 0) {
+            return 1;
+        }
+        Arrays.sort(counts);
+        return Math.max(1, counts[(int) Math.min(counts.length - 1, (long) (quantile * counts.length))]);
+    }
+
+    /**
+     * Maps {@code length} counts from {@code histogram[offset]} to colors of {@code palette} by the square root of
+     * their ratio to {@code peak}, darkest for 0 and brightest from {@code peak} up.
+     */
+    public static void toArgb(long[] histogram, int offset, long peak, Palette palette, int[] pixels,
+                              int pixelsOffset, int length) {
+        int last = palette.size() - 1;
+        for (int i = 0; i < length; i++) {
+            double level = Math.sqrt(Math.min(1.0, (double) histogram[offset + i] / peak));
+            pixels[pixelsOffset + i] = palette.argb((int) (level * last));
+        }
+    }
+
+    private static final class Worker {
+
+        private final long[] result;
+
+        private final int[] counts;
+
+        private final int width;
+
+        private final int height;
+
+        private final double minR;
+
+        private final double minIm;
+
+        private final double scaleR;
+
+        private final double scaleIm;
+
+        private final int minSteps;
+
+        private final int maxSteps;
+
+        // Orbit points counted since the last flush, a bound on every count in the histogram.
+        private long plotted;
+
+        Worker(long[] result, int width, int height, double minR, double minIm, double scaleR, double scaleIm,
+               int minSteps, int maxSteps) {
+            this.result = result;
+            this.counts = new int[result.length];
+            this.width = width;
+            this.height = height;
+            this.minR = minR;
+            this.minIm = minIm;
+            this.scaleR = scaleR;
+            this.scaleIm = scaleIm;
+            this.minSteps = minSteps;
+            this.maxSteps = maxSteps;
+        }
+
+        void sample(SplittableRandom random, long count) {
+            for (long i = 0; i < count; i++) {
+                double cr = random.nextDouble(-SAMPLE_RADIUS, SAMPLE_RADIUS);
+                double ci = random.nextDouble(-SAMPLE_RADIUS, SAMPLE_RADIUS);
+                if (cr * cr + ci * ci > SAMPLE_RADIUS * SAMPLE_RADIUS || EscapeTimeKernel.isInCardioidOrBulb(cr, ci)) {
+                    continue;
+                }
+                // z_1 = c lies inside the disk, so the orbit can start from there without the kernel testing the
+                // cardioid and bulb again.
+                int step = EscapeTimeKernel.iterate(cr, ci, cr, ci, 1, maxSteps);
+                if (step < minSteps || step >= maxSteps) {
+                    continue;
+                }
+                if (plotted + step + 1 > Integer.MAX_VALUE) {
+                    flush();
+                }
+                plot(cr, ci, step + 1);
+                plotted += step + 1;
+            }
+        }
+
+        // Repeats the arithmetic of the kernel for the first length points of the orbit.
+        private void plot(double cr, double ci, int length) {
+            double zr = 0.0;
+            double zi = 0.0;
+            for (int n = 0; n < length; n++) {
+                double zrzr = zr * zr;
+                double zizi = zi * zi;
+                zi = (zr * zi + zi * zr) + ci;
+                zr = (zrzr - zizi) + cr;
+                double x = (zr - minR) * scaleR;
+                double y = (zi - minIm) * scaleIm;
+                if (x >= 0.0 && x < width && y >= 0.0 && y < height) {
+                    counts[(int) y * width + (int) x]++;
+                }
+            }
+        }
+
+        void flush() {
+            synchronized (result) {
+                for (int i = 0; i < counts.length; i++) {
+                    result[i] += counts[i];
+                }
+            }
+            Arrays.fill(counts, 0);
+            plotted = 0;
+        }
+    }
+
+}
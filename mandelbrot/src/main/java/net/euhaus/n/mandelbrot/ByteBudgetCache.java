@@ -0,0 +1,112 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least-recently-used cache bounded by the bytes of its values rather than their number, as each value reports
+ * through {@code sizer}. Putting a value evicts the least recently used entries until the cache fits its budget again.
+ */
+public class ByteBudgetCache<K, V> {
+
+    private final long byteBudget;
+
+    private final ToLongFunction<? super V> sizer;
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long bytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public ByteBudgetCache(long byteBudget, ToLongFunction<? super V> sizer) {
+        if (byteBudget < 0) {
+            throw new IllegalArgumentException("byte budget must not be negative: " + byteBudget);
+        }
+        this.byteBudget = byteBudget;
+        this.sizer = sizer;
+    }
+
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Like {@link #get(Object)}, but neither a hit nor a miss is counted, for looking a key up again after it missed.
+     */
+    public synchronized V peek(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Caches {@code value} under {@code key}, evicting least recently used entries as needed. A value larger than the
+     * whole budget is not cached, since it would evict everything including itself; any entry it would have replaced
+     * is removed all the same, and the rest of the cache is left alone.
+     */
+    public synchronized void put(K key, V value) {
+        long size = sizer.applyAsLong(value);
+        V previous = size > byteBudget ? entries.remove(key) : entries.put(key, value);
+        if (previous != null) {
+            bytes -= sizer.applyAsLong(previous);
+        }
+        if (size > byteBudget) {
+            return;
+        }
+        bytes += size;
+
+        Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        while (bytes > byteBudget && eldest.hasNext()) {
+            bytes -= sizer.applyAsLong(eldest.next().getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[entries=" + entries.size() + ", bytes=" + bytes + "/" + byteBudget
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+}
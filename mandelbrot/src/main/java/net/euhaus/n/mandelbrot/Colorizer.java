@@ -0,0 +1,180 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Turns a retained frame of iteration counts and smooth fractions into ARGB pixels with table lookups only, so that
+ * palette swaps, color cycling and contrast stretching repaint a frame without iterating again.
+ *
+ * Each palette color is subdivided into {@value #SUBSTEPS} interpolated entries of one {@code int[]} table. A
+ * count maps to a table position, by default {@code step * SUBSTEPS}, so with fraction 0 and no offset every pixel
+ * gets exactly {@link Palette#argb(int)}. The fraction moves the position along the slope towards the next count,
+ * which makes the smooth counts continuous; the offset rotates positions around the table.
+ *
+ * Not thread-safe; meant to be used from the thread that paints.
+ */
+public final class Colorizer {
+
+    public static final int SUBSTEPS = 16;
+
+    // Share of the escaped pixels that a contrast stretch may clip at either end.
+    private static final double STRETCH_CLIP = 0.01;
+
+    private Palette palette;
+
+    private int[] colors;
+
+    private int offset;
+
+    // Table position per count when stretched, null for the identity step * SUBSTEPS.
+    private int[] positions;
+
+    public Colorizer(Palette palette) {
+        setPalette(palette);
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public void setPalette(Palette palette) {
+        int entries = palette.size() + 1;
+        int[] colors = new int[entries * SUBSTEPS];
+        for (int i = 0; i < entries; i++) {
+            int from = palette.argb(i);
+            int to = palette.argb((i + 1) % entries);
+            for (int j = 0; j < SUBSTEPS; j++) {
+                colors[i * SUBSTEPS + j] = blend(from, to, j);
+            }
+        }
+        this.palette = palette;
+        this.colors = colors;
+        this.offset %= colors.length;
+    }
+
+    private static int blend(int from, int to, int substep) {
+        int argb = 0xff << 24;
+        for (int shift = 0; shift < 24; shift += 8) {
+            int a = from >> shift & 0xff;
+            int b = to >> shift & 0xff;
+            argb |= (a + (b - a) * substep / SUBSTEPS) << shift;
+        }
+        return argb;
+    }
+
+    /**
+     * Rotates the colors by {@code substeps} table entries, i.e. {@code SUBSTEPS} per count.
+     */
+    public void cycle(int substeps) {
+        offset = Math.floorMod(offset + substeps, colors.length);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = Math.floorMod(offset, colors.length);
+    }
+
+    /**
+     * Spreads the counts of the escaped pixels of a frame over one pass through the palette, clipping the lowest and
+     * highest percent. Pixels at {@code maxSteps} keep the last color of that pass.
+     */
+    public void stretch(int[] steps, int length, int maxSteps) {
+        int[] histogram = new int[maxSteps + 1];
+        int escaped = 0;
+        for (int i = 0; i < length; i++) {
+            int step = steps[i];
+            if (step < maxSteps) {
+                histogram[step]++;
+                escaped++;
+            }
+        }
+        if (escaped == 0) {
+            positions = null;
+            return;
+        }
+        int clip = (int) (escaped * STRETCH_CLIP);
+        int low = 0;
+        int seen = histogram[low];
+        while (seen <= clip && low < maxSteps - 1) {
+            seen += histogram[++low];
+        }
+        int high = maxSteps - 1;
+        seen = histogram[high];
+        while (seen <= clip && high > low) {
+            seen += histogram[--high];
+        }
+
+        int range = colors.length - SUBSTEPS;
+        int[] positions = new int[maxSteps + 2];
+        for (int step = 0; step < positions.length; step++) {
+            int clamped = Math.max(low, Math.min(high, step));
+            positions[step] = high == low ? 0 : (int) ((long) (clamped - low) * range / (high - low));
+        }
+        this.positions = positions;
+    }
+
+    public void resetStretch() {
+        positions = null;
+    }
+
+    public boolean isStretched() {
+        return positions != null;
+    }
+
+    /**
+     * Colors {@code length} pixels. {@code fractions} may be {@code null} for plain counts.
+     */
+    public void colorize(int[] steps, float[] fractions, int[] pixels, int length) {
+        for (int i = 0; i < length; i++) {
+            pixels[i] = color(steps[i], fractions == null ? 0.0f : fractions[i]);
+        }
+    }
+
+    /**
+     * Like {@link #colorize(int[], float[], int[], int)}, and gives every pixel refined in {@code supersamples},
+     * unless that is {@code null}, the average color of all its samples.
+     */
+    public void colorize(int[] steps, float[] fractions, Supersamples supersamples, int[] pixels, int length) {
+        colorize(steps, fractions, pixels, length);
+        if (supersamples == null) {
+            return;
+        }
+        int[] refined = supersamples.getPixels();
+        int[] offsets = supersamples.getOffsets();
+        int[] sampleSteps = supersamples.getSteps();
+        float[] sampleFractions = supersamples.getFractions();
+        for (int p = 0; p < refined.length && refined[p] < length; p++) {
+            int argb = pixels[refined[p]];
+            int red = argb >> 16 & 0xff;
+            int green = argb >> 8 & 0xff;
+            int blue = argb & 0xff;
+            for (int k = offsets[p]; k < offsets[p + 1]; k++) {
+                argb = color(sampleSteps[k], sampleFractions[k]);
+                red += argb >> 16 & 0xff;
+                green += argb >> 8 & 0xff;
+                blue += argb & 0xff;
+            }
+            int samples = offsets[p + 1] - offsets[p] + 1;
+            pixels[refined[p]] = 0xff << 24 | (red + samples / 2) / samples << 16
+                    | (green + samples / 2) / samples << 8 | (blue + samples / 2) / samples;
+        }
+    }
+
+    private int color(int step, float fraction) {
+        int[] positions = this.positions;
+        int position;
+        int next;
+        if (positions == null) {
+            position = step * SUBSTEPS;
+            next = position + SUBSTEPS;
+        } else {
+            position = positions[Math.min(step, positions.length - 2)];
+            next = positions[Math.min(step, positions.length - 2) + 1];
+        }
+        position += (int) (fraction * (next - position));
+        int size = colors.length;
+        return colors[(Math.floorMod(position, size) + offset) % size];
+    }
+
+}
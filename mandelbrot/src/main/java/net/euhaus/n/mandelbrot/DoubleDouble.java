@@ -0,0 +1,115 @@
+package net.euhaus.n.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Immutable double-double number: the unevaluated sum {@code hi + lo} of two doubles with {@code |lo| <= ulp(hi)/2},
+ * about 106 bits of precision. Used for view bounds of {@link MandelbrotDoubleDouble}; its kernel works on the
+ * {@code hi}/{@code lo} pairs directly.
+ */
+public final class DoubleDouble implements Comparable<DoubleDouble> {
+
+    public static final DoubleDouble ZERO = new DoubleDouble(0.0, 0.0);
+
+    private static final MathContext DECIMAL_CONTEXT = new MathContext(34);
+
+    private final double hi;
+
+    private final double lo;
+
+    private DoubleDouble(double hi, double lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    public static DoubleDouble valueOf(double value) {
+        return new DoubleDouble(value, 0.0);
+    }
+
+    public static DoubleDouble valueOf(BigDecimal value) {
+        double hi = value.doubleValue();
+        double lo = Double.isFinite(hi) ? value.subtract(new BigDecimal(hi)).doubleValue() : 0.0;
+        return normalize(hi, lo);
+    }
+
+    public double getHi() {
+        return hi;
+    }
+
+    public double getLo() {
+        return lo;
+    }
+
+    public double doubleValue() {
+        return hi + lo;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return new BigDecimal(hi).add(new BigDecimal(lo));
+    }
+
+    public DoubleDouble add(DoubleDouble other) {
+        double s = hi + other.hi;
+        double v = s - hi;
+        double e = (hi - (s - v)) + (other.hi - v);
+        return normalize(s, e + lo + other.lo);
+    }
+
+    public DoubleDouble negate() {
+        return new DoubleDouble(-hi, -lo);
+    }
+
+    public DoubleDouble subtract(DoubleDouble other) {
+        return add(other.negate());
+    }
+
+    public DoubleDouble multiply(DoubleDouble other) {
+        double p = hi * other.hi;
+        double e = Math.fma(hi, other.hi, -p) + (hi * other.lo + lo * other.hi);
+        return normalize(p, e);
+    }
+
+    public DoubleDouble multiply(double factor) {
+        double p = hi * factor;
+        double e = Math.fma(hi, factor, -p) + lo * factor;
+        return normalize(p, e);
+    }
+
+    public DoubleDouble divide(DoubleDouble divisor) {
+        double q1 = hi / divisor.hi;
+        DoubleDouble r = subtract(divisor.multiply(q1));
+        double q2 = r.hi / divisor.hi;
+        r = r.subtract(divisor.multiply(q2));
+        double q3 = r.hi / divisor.hi;
+        DoubleDouble q = normalize(q1, q2);
+        return q.add(valueOf(q3));
+    }
+
+    private static DoubleDouble normalize(double hi, double lo) {
+        double s = hi + lo;
+        return new DoubleDouble(s, lo - (s - hi));
+    }
+
+    @Override
+    public int compareTo(DoubleDouble other) {
+        int result = Double.compare(hi, other.hi);
+        return result != 0 ? result : Double.compare(lo, other.lo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DoubleDouble && compareTo((DoubleDouble) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(hi) + Double.hashCode(lo);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().round(DECIMAL_CONTEXT).toString();
+    }
+
+}
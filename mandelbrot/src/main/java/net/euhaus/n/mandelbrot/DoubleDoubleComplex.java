@@ -0,0 +1,32 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Immutable complex number with {@link DoubleDouble} parts, for single points of {@link MandelbrotDoubleDouble}.
+ */
+public final class DoubleDoubleComplex {
+
+    public static final DoubleDoubleComplex ZERO = new DoubleDoubleComplex(DoubleDouble.ZERO, DoubleDouble.ZERO);
+
+    private final DoubleDouble real;
+
+    private final DoubleDouble imaginary;
+
+    public DoubleDoubleComplex(DoubleDouble real, DoubleDouble imaginary) {
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+    public DoubleDouble getReal() {
+        return real;
+    }
+
+    public DoubleDouble getImaginary() {
+        return imaginary;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + real + ", " + imaginary + ")";
+    }
+
+}
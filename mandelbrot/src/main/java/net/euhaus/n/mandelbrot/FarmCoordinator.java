@@ -0,0 +1,506 @@
+package net.euhaus.n.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+
+/**
+ * Render farm coordinator: splits a view into tiles and hands them out to {@link FarmWorker}s over TCP, see
+ * {@link FarmProtocol}.
+ *
+ * Tiles are ordered by a cost estimate from a coarse local probe and handed out largest first, each worker keeping
+ * a couple in flight and pulling the next one as soon as a result arrives, so expensive tiles start early and cheap
+ * ones fill the gaps at the end. A worker that disconnects, or reports no progress for the stall timeout, is dropped
+ * and its tiles go back into the queue for the others. Workers may join at any time.
+ *
+ * The image is assembled in a memory-mapped file of raw counts, so the heap stays small for any image size.
+ */
+public class FarmCoordinator {
+
+    public static final int DEFAULT_PORT = 7878;
+
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 15_000;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: FarmCoordinator [options] (--png <file> | --raw <file>)...",
+            "  --min-r <r> --max-r <r>      real range (default -2 .. 1)",
+            "  --min-im <i> --max-im <i>    imaginary range (default -1.5 .. 1.5)",
+            "  --width <px> --height <px>   image size (default 800 x 800)",
+            "  --max-steps <n|auto>         iteration limit (default " + Mandelbrot.DEFAULT_MAX_STEPS + ")",
+            "  --tile-size <px>             edge of the tiles handed out (default " + DEFAULT_TILE_SIZE + ")",
+            "  --port <n>                   port workers connect to (default " + DEFAULT_PORT + ")",
+            "  --stall-timeout <s>          drop workers without progress for this long (default "
+                    + TimeUnit.MILLISECONDS.toSeconds(DEFAULT_STALL_TIMEOUT_MILLIS) + ")",
+            "  --local-workers <n>          also start n worker processes on this machine",
+            "  --png <file>                 write a PNG colored with the GUI palette",
+            "  --raw <file>                 write raw iteration counts (int32, little-endian, row-major)");
+
+    // Tiles in flight per worker, so that a worker never waits for the network between two tiles.
+    private static final int PIPELINE_DEPTH = 2;
+
+    // Probe samples per tile edge for the cost estimate.
+    private static final int COST_SAMPLES = 4;
+
+    private final Viewport viewport;
+
+    private final int maxSteps;
+
+    private final int width;
+
+    private final int height;
+
+    private final int tileSize;
+
+    private final long stallTimeoutMillis;
+
+    // Guarded by this.
+    private final PriorityQueue<Tile> pending =
+            new PriorityQueue<>(Comparator.comparingLong((Tile tile) -> tile.cost).reversed());
+
+    private int remaining;
+
+    private int workers;
+
+    private boolean finished;
+
+    private IOException failure;
+
+    public FarmCoordinator(Viewport viewport, int maxSteps, int width, int height, int tileSize,
+                           long stallTimeoutMillis) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("image must not be empty: " + width + "x" + height);
+        }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tile size must be positive: " + tileSize);
+        }
+        this.viewport = viewport;
+        this.maxSteps = maxSteps;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+    }
+
+    /**
+     * Receives finished tiles, possibly from several threads at once but never twice for the same pixels.
+     */
+    interface TileSink {
+
+        void accept(int x, int y, int w, int h, int[] steps) throws IOException;
+
+    }
+
+    private static final class Tile {
+
+        final int id;
+
+        final int x;
+
+        final int y;
+
+        final int w;
+
+        final int h;
+
+        long cost;
+
+        boolean done;
+
+        Tile(int id, int x, int y, int w, int h) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            Map<String, String> options = MandelbrotCli.parse(args);
+            if (!options.containsKey("png") && !options.containsKey("raw")) {
+                throw new IllegalArgumentException("no output given");
+            }
+            run(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("rendering failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("rendering interrupted");
+            System.exit(1);
+        }
+    }
+
+    private static void run(Map<String, String> options) throws IOException, InterruptedException {
+        int width = MandelbrotCli.intOption(options, "width", 800);
+        int height = MandelbrotCli.intOption(options, "height", 800);
+        Viewport viewport = new Viewport(
+                decimalOption(options, "min-r", Viewport.DEFAULT.getMinR()),
+                decimalOption(options, "max-r", Viewport.DEFAULT.getMaxR()),
+                decimalOption(options, "min-im", Viewport.DEFAULT.getMinIm()),
+                decimalOption(options, "max-im", Viewport.DEFAULT.getMaxIm()));
+        int tileSize = MandelbrotCli.intOption(options, "tile-size", DEFAULT_TILE_SIZE);
+        long stallTimeout = TimeUnit.SECONDS.toMillis(MandelbrotCli.intOption(options, "stall-timeout",
+                (int) TimeUnit.MILLISECONDS.toSeconds(DEFAULT_STALL_TIMEOUT_MILLIS)));
+        int localWorkers = MandelbrotCli.intOption(options, "local-workers", 0);
+
+        TileScheduler probeScheduler = new TileScheduler();
+        Path rawPath = options.containsKey("raw") ? Paths.get(options.get("raw")) : null;
+        Path assembly = rawPath != null ? rawPath : Files.createTempFile("mandelbrot-farm", ".raw");
+        List<Process> processes = new ArrayList<>();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(assembly, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ServerSocket server = new ServerSocket(MandelbrotCli.intOption(options, "port", DEFAULT_PORT))) {
+
+            int maxSteps;
+            if ("auto".equals(options.get("max-steps"))) {
+                maxSteps = IterationLimit.choose(viewport.createMandelbrot(Mandelbrot.DEFAULT_MAX_STEPS),
+                        probeScheduler).getMaxSteps();
+                System.err.println("iteration limit " + maxSteps);
+            } else {
+                maxSteps = MandelbrotCli.intOption(options, "max-steps", Mandelbrot.DEFAULT_MAX_STEPS);
+            }
+            FarmCoordinator coordinator = new FarmCoordinator(viewport, maxSteps, width, height, tileSize,
+                    stallTimeout);
+            MappedOutput output = new MappedOutput(channel, width, height, tileSize);
+            System.err.println("listening on port " + server.getLocalPort());
+            processes.addAll(startLocalWorkers(localWorkers, server.getLocalPort()));
+
+            coordinator.render(server, output, probeScheduler);
+            output.force();
+            if (options.containsKey("png")) {
+                try (OutputStream pngOut = new BufferedOutputStream(Files.newOutputStream(Paths.get(options.get("png"))));
+                     PngStreamWriter png = new PngStreamWriter(pngOut, width, height)) {
+                    int[] steps = new int[width];
+                    int[] argb = new int[width];
+                    for (int y = 0; y < height; y++) {
+                        output.readRow(y, steps);
+                        Palette.INFERNO.toArgb(steps, 0, argb, 0, width);
+                        png.writeRow(argb, 0);
+                    }
+                }
+            }
+        } finally {
+            probeScheduler.shutdown();
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+            if (rawPath == null) {
+                Files.deleteIfExists(assembly);
+            }
+        }
+        System.err.printf(Locale.ROOT, "%nrendered %dx%d in %.1f s%n", width, height, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static BigDecimal decimalOption(Map<String, String> options, String name, BigDecimal defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number: " + value);
+        }
+    }
+
+    // Workers run with this JVM's class path and share its cores.
+    private static List<Process> startLocalWorkers(int count, int port) throws IOException {
+        List<Process> processes = new ArrayList<>();
+        if (count <= 0) {
+            return processes;
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / count);
+        for (int i = 0; i < count; i++) {
+            List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path")));
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                command.add("--add-modules=jdk.incubator.vector");
+            }
+            command.addAll(List.of(FarmWorker.class.getName(), "--port", String.valueOf(port),
+                    "--parallelism", String.valueOf(parallelism)));
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        return processes;
+    }
+
+    /**
+     * Renders the view with whatever workers connect to {@code server} and returns once every tile is in
+     * {@code sink}. {@code probeScheduler} computes the cost estimate locally.
+     */
+    public void render(ServerSocket server, TileSink sink, TileScheduler probeScheduler)
+            throws IOException, InterruptedException {
+        List<Tile> tiles = split();
+        estimateCosts(tiles, probeScheduler);
+        synchronized (this) {
+            pending.addAll(tiles);
+            remaining = tiles.size();
+        }
+
+        Thread acceptor = new Thread(() -> accept(server, sink), "mandelbrot-farm-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (!finished) {
+                    wait(TimeUnit.SECONDS.toMillis(1));
+                    System.err.printf(Locale.ROOT, "\r%5.1f%% %d workers  ",
+                            100.0 * (tiles.size() - remaining) / tiles.size(), workers);
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private List<Tile> split() {
+        List<Tile> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                tiles.add(new Tile(tiles.size(), x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        return tiles;
+    }
+
+    // Sums a coarse sample of every tile; a tile inside the set costs maxSteps per sample, one outside a few.
+    private void estimateCosts(List<Tile> tiles, TileScheduler probeScheduler) {
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int probeWidth = Math.min(width, tilesX * COST_SAMPLES);
+        int probeHeight = Math.min(height, tilesY * COST_SAMPLES);
+        int[] probe = probeScheduler.render(viewport.createMandelbrot(maxSteps), probeWidth, probeHeight);
+        for (int py = 0; py < probeHeight; py++) {
+            int tileY = (int) ((long) py * height / probeHeight) / tileSize;
+            for (int px = 0; px < probeWidth; px++) {
+                int tileX = (int) ((long) px * width / probeWidth) / tileSize;
+                tiles.get(tileY * tilesX + tileX).cost += probe[py * probeWidth + px] + 1;
+            }
+        }
+    }
+
+    private void accept(ServerSocket server, TileSink sink) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket, sink),
+                        "mandelbrot-farm-" + socket.getRemoteSocketAddress());
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    System.err.println("accepting workers failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket, TileSink sink) {
+        String name = String.valueOf(socket.getRemoteSocketAddress());
+        Map<Integer, Tile> outstanding = new LinkedHashMap<>();
+        boolean joined = false;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            // A worker that is alive sends a heartbeat every second, so a read timing out means it hangs.
+            socket.setSoTimeout((int) stallTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            FarmProtocol.readHello(in);
+            joined(1);
+            joined = true;
+            FarmProtocol.writeView(out, viewport, maxSteps, width, height);
+
+            Inflater inflater = new Inflater();
+            try {
+                int[] steps = new int[tileSize * tileSize];
+                byte[] deflated = new byte[1 << 16];
+                long lastProgress = System.nanoTime();
+                long lastComputed = -1;
+                while (true) {
+                    Tile tile;
+                    while (outstanding.size() < PIPELINE_DEPTH && (tile = next(outstanding.isEmpty())) != null) {
+                        if (outstanding.isEmpty()) {
+                            lastProgress = System.nanoTime();
+                        }
+                        FarmProtocol.writeTile(out, tile.id, tile.x, tile.y, tile.w, tile.h);
+                        outstanding.put(tile.id, tile);
+                    }
+                    if (outstanding.isEmpty()) {
+                        out.writeByte(FarmProtocol.DONE);
+                        out.flush();
+                        return;
+                    }
+                    out.flush();
+
+                    byte type = in.readByte();
+                    if (type == FarmProtocol.RESULT) {
+                        int id = in.readInt();
+                        in.readLong();
+                        int length = in.readInt();
+                        if (deflated.length < length) {
+                            deflated = new byte[length];
+                        }
+                        in.readFully(deflated, 0, length);
+                        Tile result = outstanding.remove(id);
+                        if (result == null) {
+                            throw new IOException("unexpected tile " + id);
+                        }
+                        FarmProtocol.inflate(deflated, length, steps, result.w * result.h, inflater);
+                        complete(result, steps, sink);
+                        lastProgress = System.nanoTime();
+                    } else if (type == FarmProtocol.HEARTBEAT) {
+                        long computed = in.readLong();
+                        if (computed != lastComputed) {
+                            lastComputed = computed;
+                            lastProgress = System.nanoTime();
+                        }
+                    } else {
+                        throw new IOException("unknown message type " + type);
+                    }
+                    if (System.nanoTime() - lastProgress > TimeUnit.MILLISECONDS.toNanos(stallTimeoutMillis)) {
+                        throw new IOException("no progress for " + stallTimeoutMillis + " ms");
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+        } catch (IOException e) {
+            System.err.println();
+            System.err.println("worker " + name + " dropped: " + e.getMessage());
+        } finally {
+            requeue(outstanding.values());
+            if (joined) {
+                joined(-1);
+            }
+        }
+    }
+
+    private synchronized void joined(int delta) {
+        workers += delta;
+    }
+
+    // The most expensive pending tile; waits for one while the worker has nothing in flight.
+    private synchronized Tile next(boolean wait) {
+        try {
+            while (wait && pending.isEmpty() && !finished) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return finished ? null : pending.poll();
+    }
+
+    private void complete(Tile tile, int[] steps, TileSink sink) {
+        synchronized (this) {
+            if (tile.done || finished) {
+                return;
+            }
+            tile.done = true;
+        }
+        try {
+            sink.accept(tile.x, tile.y, tile.w, tile.h, steps);
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                finished = true;
+                notifyAll();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (--remaining == 0) {
+                finished = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void requeue(Iterable<Tile> tiles) {
+        for (Tile tile : tiles) {
+            if (!tile.done) {
+                pending.add(tile);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * The assembly file, mapped in bands of whole tile rows, which doubles as the raw output.
+     */
+    private static final class MappedOutput implements TileSink {
+
+        private final int width;
+
+        private final int bandRows;
+
+        private final MappedByteBuffer[] mapped;
+
+        private final IntBuffer[] bands;
+
+        MappedOutput(FileChannel channel, int width, int height, int bandRows) throws IOException {
+            this.width = width;
+            this.bandRows = bandRows;
+            int count = (height + bandRows - 1) / bandRows;
+            this.mapped = new MappedByteBuffer[count];
+            this.bands = new IntBuffer[count];
+            for (int band = 0; band < count; band++) {
+                int rows = Math.min(bandRows, height - band * bandRows);
+                mapped[band] = channel.map(FileChannel.MapMode.READ_WRITE, 4L * band * bandRows * width,
+                        4L * rows * width);
+                bands[band] = mapped[band].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+        }
+
+        @Override
+        public void accept(int x, int y, int w, int h, int[] steps) {
+            for (int row = 0; row < h; row++) {
+                int py = y + row;
+                bands[py / bandRows].put((py % bandRows) * width + x, steps, row * w, w);
+            }
+        }
+
+        void readRow(int y, int[] steps) {
+            bands[y / bandRows].get((y % bandRows) * width, steps, 0, width);
+        }
+
+        void force() {
+            for (MappedByteBuffer band : mapped) {
+                band.force();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package net.euhaus.n.mandelbrot;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary protocol between {@link FarmCoordinator} and {@link FarmWorker}, big-endian over one TCP connection.
+ *
+ * <pre>
+ * worker      HELLO     magic:int version:int parallelism:int
+ * coordinator VIEW      1:byte minR maxR minIm maxIm:utf maxSteps:int width:int height:int
+ * coordinator TILE      2:byte id:int x:int y:int w:int h:int
+ * coordinator DONE      3:byte
+ * worker      RESULT    4:byte id:int nanos:long length:int deflated counts:byte[length]
+ * worker      HEARTBEAT 5:byte computedPixels:long
+ * </pre>
+ *
+ * The view is sent once per connection with exact decimal bounds, so workers pick the same engine as a local
+ * render would. Counts are deflated 32-bit integers; interior and slow-changing exterior regions compress well.
+ */
+final class FarmProtocol {
+
+    static final int MAGIC = 0x4d424652;
+
+    static final int VERSION = 1;
+
+    static final byte VIEW = 1;
+
+    static final byte TILE = 2;
+
+    static final byte DONE = 3;
+
+    static final byte RESULT = 4;
+
+    static final byte HEARTBEAT = 5;
+
+    private FarmProtocol() {
+    }
+
+    static void writeHello(DataOutputStream out, int parallelism) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(parallelism);
+        out.flush();
+    }
+
+    /**
+     * Returns the parallelism of the worker.
+     */
+    static int readHello(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("not a render farm peer: " + Integer.toHexString(magic));
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported protocol version: " + version);
+        }
+        return in.readInt();
+    }
+
+    static void writeView(DataOutputStream out, Viewport viewport, int maxSteps, int width, int height)
+            throws IOException {
+        out.writeByte(VIEW);
+        out.writeUTF(viewport.getMinR().toString());
+        out.writeUTF(viewport.getMaxR().toString());
+        out.writeUTF(viewport.getMinIm().toString());
+        out.writeUTF(viewport.getMaxIm().toString());
+        out.writeInt(maxSteps);
+        out.writeInt(width);
+        out.writeInt(height);
+    }
+
+    static Viewport readViewport(DataInputStream in) throws IOException {
+        return new Viewport(new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()),
+                new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()));
+    }
+
+    static void writeTile(DataOutputStream out, int id, int x, int y, int w, int h) throws IOException {
+        out.writeByte(TILE);
+        out.writeInt(id);
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(w);
+        out.writeInt(h);
+    }
+
+    static void writeResult(DataOutputStream out, int id, long nanos, byte[] deflated, int length)
+            throws IOException {
+        out.writeByte(RESULT);
+        out.writeInt(id);
+        out.writeLong(nanos);
+        out.writeInt(length);
+        out.write(deflated, 0, length);
+    }
+
+    static void writeHeartbeat(DataOutputStream out, long computedPixels) throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(computedPixels);
+    }
+
+    /**
+     * Compresses {@code steps[0, length)} and returns the buffer holding them, which is {@code buffer} if that was
+     * large enough; the compressed size is left in {@code size[0]}.
+     */
+    static byte[] deflate(int[] steps, int length, Deflater deflater, byte[] buffer, int[] size) {
+        ByteBuffer raw = ByteBuffer.allocate(4 * length);
+        raw.asIntBuffer().put(steps, 0, length);
+        deflater.reset();
+        deflater.setInput(raw.array());
+        deflater.finish();
+        int total = 0;
+        while (!deflater.finished()) {
+            if (total == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(64, buffer.length * 2));
+            }
+            total += deflater.deflate(buffer, total, buffer.length - total);
+        }
+        size[0] = total;
+        return buffer;
+    }
+
+    static void inflate(byte[] deflated, int length, int[] steps, int count, Inflater inflater) throws IOException {
+        byte[] raw = new byte[4 * count];
+        inflater.reset();
+        inflater.setInput(deflated, 0, length);
+        try {
+            int total = 0;
+            while (total < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, total, raw.length - total);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                total += inflated;
+            }
+            if (total != raw.length) {
+                throw new IOException("tile truncated: " + total + " of " + raw.length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt tile", e);
+        }
+        ByteBuffer.wrap(raw).asIntBuffer().get(steps, 0, count);
+    }
+
+}
@@ -0,0 +1,174 @@
+package net.euhaus.n.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Render farm worker: connects to a {@link FarmCoordinator}, computes the tiles it is sent on all local cores and
+ * streams the counts back. While a tile is being computed a heartbeat reports the pixels done so far, which lets the
+ * coordinator tell a slow tile from a stalled worker.
+ */
+public class FarmWorker {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: FarmWorker [options]",
+            "  --host <name>                coordinator host (default localhost)",
+            "  --port <n>                   coordinator port (default " + FarmCoordinator.DEFAULT_PORT + ")",
+            "  --parallelism <n>            worker threads (default: all cores)",
+            "  --connect-timeout <s>        how long to retry connecting (default 30)");
+
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private static final long RETRY_MILLIS = 200;
+
+    private final TileScheduler tileScheduler;
+
+    public FarmWorker(TileScheduler tileScheduler) {
+        this.tileScheduler = tileScheduler;
+    }
+
+    public static void main(String[] args) {
+        try {
+            Map<String, String> options = MandelbrotCli.parse(args);
+            TileScheduler tileScheduler = new TileScheduler(
+                    MandelbrotCli.intOption(options, "parallelism", Runtime.getRuntime().availableProcessors()),
+                    TileScheduler.DEFAULT_TILE_SIZE);
+            try {
+                new FarmWorker(tileScheduler).run(options.getOrDefault("host", "localhost"),
+                        MandelbrotCli.intOption(options, "port", FarmCoordinator.DEFAULT_PORT),
+                        TimeUnit.SECONDS.toMillis(MandelbrotCli.intOption(options, "connect-timeout", 30)));
+            } finally {
+                tileScheduler.shutdown();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("worker failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Serves one coordinator until it sends {@link FarmProtocol#DONE}, retrying the connection for up to
+     * {@code connectTimeoutMillis} so that workers may start before the coordinator.
+     */
+    public void run(String host, int port, long connectTimeoutMillis) throws IOException {
+        try (Socket socket = connect(host, port, connectTimeoutMillis)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            FarmProtocol.writeHello(out, tileScheduler.getParallelism());
+            serve(in, out);
+        }
+    }
+
+    private static Socket connect(String host, int port, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port));
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mandelbrot-farm-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> {
+            synchronized (out) {
+                try {
+                    FarmProtocol.writeHeartbeat(out, tileScheduler.getComputedPixels());
+                    out.flush();
+                } catch (IOException e) {
+                    // The main loop notices the broken connection on its next read or write.
+                }
+            }
+        }, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            Mandelbrot<?, ?> mandelbrot = null;
+            int width = 0;
+            int height = 0;
+            int[] steps = new int[0];
+            byte[] deflated = new byte[1 << 16];
+            int[] size = new int[1];
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    throw new IOException("coordinator closed the connection", e);
+                }
+                switch (type) {
+                    case FarmProtocol.VIEW:
+                        Viewport viewport = FarmProtocol.readViewport(in);
+                        int maxSteps = in.readInt();
+                        width = in.readInt();
+                        height = in.readInt();
+                        mandelbrot = viewport.createMandelbrot(maxSteps);
+                        break;
+                    case FarmProtocol.TILE:
+                        int id = in.readInt();
+                        int x = in.readInt();
+                        int y = in.readInt();
+                        int w = in.readInt();
+                        int h = in.readInt();
+                        if (mandelbrot == null) {
+                            throw new IOException("tile " + id + " sent before the view");
+                        }
+                        if (steps.length < w * h) {
+                            steps = new int[w * h];
+                        }
+                        long start = System.nanoTime();
+                        tileScheduler.render(mandelbrot, steps, x, y, w, h, width, height);
+                        long nanos = System.nanoTime() - start;
+                        deflated = FarmProtocol.deflate(steps, w * h, deflater, deflated, size);
+                        synchronized (out) {
+                            FarmProtocol.writeResult(out, id, nanos, deflated, size[0]);
+                            out.flush();
+                        }
+                        break;
+                    case FarmProtocol.DONE:
+                        return;
+                    default:
+                        throw new IOException("unknown message type " + type);
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+            deflater.end();
+        }
+    }
+
+}
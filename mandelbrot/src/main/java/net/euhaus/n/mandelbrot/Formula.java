@@ -0,0 +1,455 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An iteration formula {@code z -> f(z, c)} over complex numbers, such as {@code z^2 + c}, {@code z^3 + c} or the
+ * Burning Ship {@code (|re z| + i|im z|)^2 + c}.
+ *
+ * The syntax has the variables {@code z} and {@code c}, the imaginary unit {@code i}, decimal numbers,
+ * {@code + - * /}, {@code ^} with an integer exponent from 0 to {@value #MAX_EXPONENT}, {@code |x|} for the modulus,
+ * the functions {@code re}, {@code im}, {@code abs} and {@code conj} with or without parentheses, and implicit
+ * multiplication as in {@code 2z} or {@code i|im z|}. A function without parentheses applies to the power that follows
+ * it, so {@code re z^2} is {@code re(z^2)}.
+ *
+ * Parsing lowers a formula to a straight-line program of complex operations without repeated subexpressions, powers
+ * expanded into multiplications, which a {@link FormulaKernel} then compiles or interprets. Two formulas are equal when
+ * their programs are, whatever their spelling.
+ */
+public final class Formula {
+
+    public static final int MAX_EXPONENT = 64;
+
+    // Operations of the program. Instruction k writes register k from registers with lower indices.
+    static final int Z = 0;
+
+    static final int C = 1;
+
+    static final int CONSTANT = 2;
+
+    static final int ADD = 3;
+
+    static final int SUBTRACT = 4;
+
+    static final int MULTIPLY = 5;
+
+    static final int DIVIDE = 6;
+
+    static final int NEGATE = 7;
+
+    static final int MODULUS = 8;
+
+    static final int REAL = 9;
+
+    static final int IMAGINARY = 10;
+
+    static final int CONJUGATE = 11;
+
+    private static final String[] NAMES = {"z", "c", "const", "add", "sub", "mul", "div", "neg", "abs", "re", "im",
+            "conj"};
+
+    // Declared after the tables above, which parsing needs during class initialization.
+    public static final Formula MANDELBROT = parse("z^2 + c");
+
+    public static final Formula BURNING_SHIP = parse("(|re z| + i|im z|)^2 + c");
+
+    private final String text;
+
+    private final int[] operations;
+
+    private final int[] left;
+
+    private final int[] right;
+
+    private final double[] real;
+
+    private final double[] imaginary;
+
+    private final double degree;
+
+    private final String program;
+
+    private Formula(String text, Parser parser) {
+        int size = parser.operations.size();
+        this.text = text;
+        this.operations = new int[size];
+        this.left = new int[size];
+        this.right = new int[size];
+        this.real = new double[size];
+        this.imaginary = new double[size];
+        StringBuilder program = new StringBuilder();
+        for (int k = 0; k < size; k++) {
+            operations[k] = parser.operations.get(k);
+            left[k] = parser.left.get(k);
+            right[k] = parser.right.get(k);
+            real[k] = parser.real.get(k);
+            imaginary[k] = parser.imaginary.get(k);
+            program.append(parser.key(k)).append(';');
+        }
+        this.degree = parser.degrees.get(size - 1);
+        this.program = program.toString();
+    }
+
+    /**
+     * Parses {@code text}, throwing an {@link IllegalArgumentException} that names the position of the first error.
+     */
+    public static Formula parse(String text) {
+        Parser parser = new Parser(text);
+        parser.parse();
+        return new Formula(text.trim(), parser);
+    }
+
+    /**
+     * The degree of the formula as a polynomial in {@code z}, which sets how fast escaping orbits grow and with that
+     * the smooth iteration count; 0 when it is not a polynomial in {@code z}.
+     */
+    public double getDegree() {
+        return degree;
+    }
+
+    int size() {
+        return operations.length;
+    }
+
+    int operation(int k) {
+        return operations[k];
+    }
+
+    int left(int k) {
+        return left[k];
+    }
+
+    int right(int k) {
+        return right[k];
+    }
+
+    double real(int k) {
+        return real[k];
+    }
+
+    double imaginary(int k) {
+        return imaginary[k];
+    }
+
+    /**
+     * The program in a canonical form, one instruction per register.
+     */
+    public String getProgram() {
+        return program;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Formula && program.equals(((Formula) o).program);
+    }
+
+    @Override
+    public int hashCode() {
+        return program.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static final class Parser {
+
+        private final String text;
+
+        private final List<Integer> operations = new ArrayList<>();
+
+        private final List<Integer> left = new ArrayList<>();
+
+        private final List<Integer> right = new ArrayList<>();
+
+        private final List<Double> real = new ArrayList<>();
+
+        private final List<Double> imaginary = new ArrayList<>();
+
+        private final List<Double> degrees = new ArrayList<>();
+
+        private final Map<String, Integer> registers = new HashMap<>();
+
+        private int position;
+
+        // Nesting of |x|; inside one, a '|' closes it instead of starting an implicit product.
+        private int modulusDepth;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        void parse() {
+            expression();
+            skipSpace();
+            if (position < text.length()) {
+                throw error("unexpected '" + text.charAt(position) + "'");
+            }
+        }
+
+        private int expression() {
+            int register = term();
+            while (true) {
+                if (accept('+')) {
+                    register = emit(ADD, register, term());
+                } else if (accept('-')) {
+                    register = emit(SUBTRACT, register, term());
+                } else {
+                    return register;
+                }
+            }
+        }
+
+        private int term() {
+            int register = unary();
+            while (true) {
+                if (accept('*')) {
+                    register = emit(MULTIPLY, register, unary());
+                } else if (accept('/')) {
+                    register = emit(DIVIDE, register, unary());
+                } else if (startsPrimary()) {
+                    register = emit(MULTIPLY, register, power());
+                } else {
+                    return register;
+                }
+            }
+        }
+
+        private int unary() {
+            if (accept('-')) {
+                return emit(NEGATE, unary(), -1);
+            }
+            accept('+');
+            return power();
+        }
+
+        private int power() {
+            int base = primary();
+            if (!accept('^')) {
+                return base;
+            }
+            skipSpace();
+            int start = position;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error("expected an integer exponent");
+            }
+            int exponent;
+            try {
+                exponent = Integer.parseInt(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                exponent = Integer.MAX_VALUE;
+            }
+            if (exponent > MAX_EXPONENT) {
+                throw new IllegalArgumentException("exponent must be at most " + MAX_EXPONENT + " at position "
+                        + start + ": " + text);
+            }
+            return power(base, exponent);
+        }
+
+        // Square and multiply; the squares are shared with the partial products through the register table.
+        private int power(int base, int exponent) {
+            if (exponent == 0) {
+                return constant(1.0, 0.0);
+            }
+            int result = -1;
+            int square = base;
+            while (true) {
+                if ((exponent & 1) != 0) {
+                    result = result < 0 ? square : emit(MULTIPLY, result, square);
+                }
+                exponent >>= 1;
+                if (exponent == 0) {
+                    return result;
+                }
+                square = emit(MULTIPLY, square, square);
+            }
+        }
+
+        private int primary() {
+            skipSpace();
+            if (position == text.length()) {
+                throw error("unexpected end");
+            }
+            char next = text.charAt(position);
+            if (next == '(') {
+                position++;
+                int register = expression();
+                expect(')');
+                return register;
+            }
+            if (next == '|') {
+                position++;
+                modulusDepth++;
+                int register = expression();
+                modulusDepth--;
+                expect('|');
+                return emit(MODULUS, register, -1);
+            }
+            if (Character.isDigit(next) || next == '.') {
+                return number();
+            }
+            if (Character.isLetter(next)) {
+                int start = position;
+                while (position < text.length() && Character.isLetter(text.charAt(position))) {
+                    position++;
+                }
+                String name = text.substring(start, position);
+                switch (name) {
+                    case "z":
+                        return emit(Z, -1, -1);
+                    case "c":
+                        return emit(C, -1, -1);
+                    case "i":
+                        return constant(0.0, 1.0);
+                    case "re":
+                        return emit(REAL, power(), -1);
+                    case "im":
+                        return emit(IMAGINARY, power(), -1);
+                    case "abs":
+                        return emit(MODULUS, power(), -1);
+                    case "conj":
+                        return emit(CONJUGATE, power(), -1);
+                    default:
+                        position = start;
+                        throw error("unknown name '" + name + "'");
+                }
+            }
+            throw error("unexpected '" + next + "'");
+        }
+
+        private int number() {
+            int start = position;
+            while (position < text.length()
+                    && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                int mantissa = position;
+                position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                    position++;
+                }
+                if (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                        position++;
+                    }
+                } else {
+                    position = mantissa;
+                }
+            }
+            try {
+                return constant(Double.parseDouble(text.substring(start, position)), 0.0);
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("malformed number");
+            }
+        }
+
+        private boolean startsPrimary() {
+            skipSpace();
+            if (position == text.length()) {
+                return false;
+            }
+            char next = text.charAt(position);
+            return next == '(' || Character.isLetterOrDigit(next) || next == '.' || next == '|' && modulusDepth == 0;
+        }
+
+        private int constant(double re, double im) {
+            return emit(CONSTANT, -1, -1, re, im);
+        }
+
+        private int emit(int operation, int a, int b) {
+            return emit(operation, a, b, 0.0, 0.0);
+        }
+
+        private int emit(int operation, int a, int b, double re, double im) {
+            String key = key(operation, a, b, re, im);
+            Integer existing = registers.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int register = operations.size();
+            operations.add(operation);
+            left.add(a);
+            right.add(b);
+            real.add(re);
+            imaginary.add(im);
+            degrees.add(degree(operation, a, b));
+            registers.put(key, register);
+            return register;
+        }
+
+        private double degree(int operation, int a, int b) {
+            switch (operation) {
+                case Z:
+                    return 1.0;
+                case C:
+                case CONSTANT:
+                    return 0.0;
+                case ADD:
+                case SUBTRACT:
+                    return Math.max(degrees.get(a), degrees.get(b));
+                case MULTIPLY:
+                    return degrees.get(a) + degrees.get(b);
+                case DIVIDE:
+                    return degrees.get(b) == 0.0 ? degrees.get(a) : 0.0;
+                default:
+                    return degrees.get(a);
+            }
+        }
+
+        String key(int k) {
+            return key(operations.get(k), left.get(k), right.get(k), real.get(k), imaginary.get(k));
+        }
+
+        private static String key(int operation, int a, int b, double re, double im) {
+            switch (operation) {
+                case Z:
+                case C:
+                    return NAMES[operation];
+                case CONSTANT:
+                    return NAMES[operation] + " " + re + " " + im;
+                case ADD:
+                case SUBTRACT:
+                case MULTIPLY:
+                case DIVIDE:
+                    return NAMES[operation] + " " + a + " " + b;
+                default:
+                    return NAMES[operation] + " " + a;
+            }
+        }
+
+        private void skipSpace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private boolean accept(char expected) {
+            skipSpace();
+            if (position < text.length() && text.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (!accept(expected)) {
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + ": " + text);
+        }
+    }
+
+}
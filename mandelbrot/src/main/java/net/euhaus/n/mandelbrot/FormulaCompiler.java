@@ -0,0 +1,395 @@
+package net.euhaus.n.mandelbrot;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generates the Java source of a {@link FormulaKernel} for one formula, compiles it in memory with the runtime's
+ * {@code javac} and defines the result as a hidden class of this package.
+ *
+ * The program of the formula becomes straight-line code on local doubles inside the iteration loop. Parts that are
+ * known constants are folded while generating, so that for instance the imaginary part of {@code |re z|} or a
+ * multiplication by {@code i} cost nothing, and {@code z^2 + c} compiles to the same operations as
+ * {@link EscapeTimeKernel}. The JIT then treats the kernel like any hand-written one. Formulas only reach the source
+ * as numbers and operators re-rendered from the parsed program.
+ */
+final class FormulaCompiler {
+
+    private static final String PACKAGE = FormulaCompiler.class.getPackageName();
+
+    private static final String CLASS_NAME = "GeneratedFormulaKernel";
+
+    private static final Map<Formula, FormulaKernel> KERNELS = new ConcurrentHashMap<>();
+
+    private FormulaCompiler() {
+    }
+
+    static FormulaKernel kernelFor(Formula formula) {
+        return KERNELS.computeIfAbsent(formula, key -> {
+            FormulaKernel compiled = compile(key);
+            return compiled != null ? compiled : new FormulaInterpreter(key);
+        });
+    }
+
+    static FormulaKernel compile(Formula formula) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            return null;
+        }
+        byte[] bytes = compile(javac, source(formula));
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (FormulaKernel) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class, Formula.class)).invoke(formula);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("cannot instantiate the kernel of " + formula, e);
+        }
+    }
+
+    // The class file of the source, or null if it does not compile against the classes at hand.
+    private static byte[] compile(JavaCompiler javac, String source) {
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        StandardJavaFileManager standard = javac.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension),
+                        kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classFile;
+                    }
+                };
+            }
+        };
+        JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("mem:///"
+                + (PACKAGE + '.' + CLASS_NAME).replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = List.of("-classpath", classPath(), "-proc:none", "-implicit:none", "-g:none");
+        try (JavaFileManager files = fileManager) {
+            Boolean success = javac.getTask(null, files, diagnostic -> { }, options, null,
+                    Collections.singletonList(sourceFile)).call();
+            return Boolean.TRUE.equals(success) ? classFile.toByteArray() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Where this package's classes come from, so that the kernel compiles against them in any launch setup.
+    private static String classPath() {
+        List<String> entries = new ArrayList<>();
+        CodeSource codeSource = FormulaCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null) {
+            try {
+                entries.add(Paths.get(codeSource.getLocation().toURI()).toString());
+            } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                // java.class.path below is all there is.
+            }
+        }
+        entries.add(System.getProperty("java.class.path", ""));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    static String source(Formula formula) {
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(PACKAGE).append(";\n\n");
+        out.append("// z -> ").append(formula.getProgram()).append('\n');
+        out.append("final class ").append(CLASS_NAME).append(" implements FormulaKernel {\n\n");
+        out.append("    private final Formula formula;\n\n");
+        out.append("    ").append(CLASS_NAME).append("(Formula formula) {\n");
+        out.append("        this.formula = formula;\n");
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public int iterate(double zr, double zi, double cr, double ci, int step, int maxSteps,\n");
+        out.append("                       float[] fractions, int index) {\n");
+        out.append("        double checkR = zr;\n");
+        out.append("        double checkI = zi;\n");
+        out.append("        int period = 0;\n");
+        out.append("        int window = 1;\n");
+        out.append("        for (; step < maxSteps; step++) {\n");
+        step(out, formula, "            ");
+        out.append("            if (EscapeTimeKernel.escaped(zr, zi)) {\n");
+        out.append("                if (fractions != null) {\n");
+        out.append("                    fractions[index] = fraction(zr, zi, cr, ci);\n");
+        out.append("                }\n");
+        out.append("                return step;\n");
+        out.append("            }\n");
+        out.append("            if (zr == checkR && zi == checkI) {\n");
+        out.append("                EscapeTimeKernel.saved(maxSteps - step - 1);\n");
+        out.append("                return maxSteps;\n");
+        out.append("            }\n");
+        out.append("            if (++period == window) {\n");
+        out.append("                checkR = zr;\n");
+        out.append("                checkI = zi;\n");
+        out.append("                period = 0;\n");
+        out.append("                window <<= 1;\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return step;\n");
+        out.append("    }\n\n");
+
+        out.append("    private static float fraction(double zr, double zi, double cr, double ci) {\n");
+        out.append("        for (int i = 0; i < SMOOTH_EXTRA_STEPS; i++) {\n");
+        step(out, formula, "            ");
+        out.append("        }\n");
+        out.append("        return FormulaKernel.smoothFraction(zr, zi, ").append(literal(formula.getDegree()))
+                .append(");\n");
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public String toString() {\n");
+        out.append("        return \"compiled \" + formula;\n");
+        out.append("    }\n\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    // One iteration: the program on locals r<k>/i<k>, then z set to the last register.
+    private static void step(StringBuilder out, Formula formula, String indent) {
+        Part[] re = new Part[formula.size()];
+        Part[] im = new Part[formula.size()];
+        for (int k = 0; k < formula.size(); k++) {
+            Part ar = null;
+            Part ai = null;
+            Part br = null;
+            Part bi = null;
+            if (formula.left(k) >= 0) {
+                ar = re[formula.left(k)];
+                ai = im[formula.left(k)];
+            }
+            if (formula.right(k) >= 0) {
+                br = re[formula.right(k)];
+                bi = im[formula.right(k)];
+            }
+            Part r;
+            Part i;
+            switch (formula.operation(k)) {
+                case Formula.Z:
+                    r = Part.of("zr");
+                    i = Part.of("zi");
+                    break;
+                case Formula.C:
+                    r = Part.of("cr");
+                    i = Part.of("ci");
+                    break;
+                case Formula.CONSTANT:
+                    r = Part.of(formula.real(k));
+                    i = Part.of(formula.imaginary(k));
+                    break;
+                case Formula.ADD:
+                    r = add(ar, br);
+                    i = add(ai, bi);
+                    break;
+                case Formula.SUBTRACT:
+                    r = subtract(ar, br);
+                    i = subtract(ai, bi);
+                    break;
+                case Formula.MULTIPLY:
+                    if (formula.left(k) == formula.right(k)) {
+                        r = subtract(multiply(ar, ar), multiply(ai, ai));
+                        i = multiply(multiply(Part.of(2.0), ar), ai);
+                    } else {
+                        r = subtract(multiply(ar, br), multiply(ai, bi));
+                        i = add(multiply(ar, bi), multiply(ai, br));
+                    }
+                    break;
+                case Formula.DIVIDE:
+                    if (bi.isZero()) {
+                        r = divide(ar, br);
+                        i = divide(ai, br);
+                    } else {
+                        Part denominator = declare(out, indent, "d" + k,
+                                add(multiply(br, br), multiply(bi, bi)));
+                        r = divide(add(multiply(ar, br), multiply(ai, bi)), denominator);
+                        i = divide(subtract(multiply(ai, br), multiply(ar, bi)), denominator);
+                    }
+                    break;
+                case Formula.NEGATE:
+                    r = negate(ar);
+                    i = negate(ai);
+                    break;
+                case Formula.MODULUS:
+                    if (ai.isZero()) {
+                        r = ar.constant ? Part.of(Math.abs(ar.value)) : Part.of("Math.abs(" + ar + ")");
+                    } else if (ar.isZero()) {
+                        r = ai.constant ? Part.of(Math.abs(ai.value)) : Part.of("Math.abs(" + ai + ")");
+                    } else {
+                        r = Part.of("Math.sqrt(" + add(multiply(ar, ar), multiply(ai, ai)) + ")");
+                    }
+                    i = Part.of(0.0);
+                    break;
+                case Formula.REAL:
+                    r = ar;
+                    i = Part.of(0.0);
+                    break;
+                case Formula.IMAGINARY:
+                    r = ai;
+                    i = Part.of(0.0);
+                    break;
+                case Formula.CONJUGATE:
+                    r = ar;
+                    i = negate(ai);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown operation " + formula.operation(k));
+            }
+            re[k] = declare(out, indent, "r" + k, r);
+            im[k] = declare(out, indent, "i" + k, i);
+        }
+        int result = formula.size() - 1;
+        out.append(indent).append("double nextR = ").append(re[result]).append(";\n");
+        out.append(indent).append("double nextI = ").append(im[result]).append(";\n");
+        out.append(indent).append("zr = nextR;\n");
+        out.append(indent).append("zi = nextI;\n");
+    }
+
+    // Stores a computed part in a local; constants and plain names are used as they are.
+    private static Part declare(StringBuilder out, String indent, String name, Part part) {
+        if (part.constant || part.code.matches("[a-z]+[0-9]*")) {
+            return part;
+        }
+        out.append(indent).append("double ").append(name).append(" = ").append(part).append(";\n");
+        return Part.of(name);
+    }
+
+    private static Part add(Part a, Part b) {
+        if (a.constant && b.constant) {
+            return Part.of(a.value + b.value);
+        }
+        if (a.isZero()) {
+            return b;
+        }
+        if (b.isZero()) {
+            return a;
+        }
+        return Part.of("(" + a + " + " + b + ")");
+    }
+
+    private static Part subtract(Part a, Part b) {
+        if (a.constant && b.constant) {
+            return Part.of(a.value - b.value);
+        }
+        if (b.isZero()) {
+            return a;
+        }
+        if (a.isZero()) {
+            return negate(b);
+        }
+        return Part.of("(" + a + " - " + b + ")");
+    }
+
+    private static Part multiply(Part a, Part b) {
+        if (a.constant && b.constant) {
+            return Part.of(a.value * b.value);
+        }
+        if (a.isZero() || b.isZero()) {
+            return Part.of(0.0);
+        }
+        if (a.isOne()) {
+            return b;
+        }
+        if (b.isOne()) {
+            return a;
+        }
+        return Part.of("(" + a + " * " + b + ")");
+    }
+
+    private static Part divide(Part a, Part b) {
+        if (a.isZero()) {
+            return Part.of(0.0);
+        }
+        if (b.isOne()) {
+            return a;
+        }
+        return Part.of("(" + a + " / " + b + ")");
+    }
+
+    private static Part negate(Part a) {
+        return a.constant ? Part.of(-a.value) : Part.of("(-" + a + ")");
+    }
+
+    private static String literal(double value) {
+        if (Double.isNaN(value)) {
+            return "Double.NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        String literal = Double.toString(value);
+        return value < 0 || 1 / value < 0 ? "(" + literal + ")" : literal;
+    }
+
+    // The real or imaginary part of a register while generating: a known constant or a Java expression.
+    private static final class Part {
+
+        private final boolean constant;
+
+        private final double value;
+
+        private final String code;
+
+        private Part(boolean constant, double value, String code) {
+            this.constant = constant;
+            this.value = value;
+            this.code = code;
+        }
+
+        static Part of(double value) {
+            return new Part(true, value, literal(value));
+        }
+
+        static Part of(String code) {
+            return new Part(false, 0.0, code);
+        }
+
+        boolean isZero() {
+            return constant && value == 0.0;
+        }
+
+        boolean isOne() {
+            return constant && value == 1.0;
+        }
+
+        @Override
+        public String toString() {
+            return code;
+        }
+    }
+
+}
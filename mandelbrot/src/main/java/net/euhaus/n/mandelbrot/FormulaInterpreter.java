@@ -0,0 +1,133 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Runs the program of a {@link Formula} instruction by instruction on a register file. Several times slower than a
+ * compiled kernel, it is the fallback where the runtime has no Java compiler.
+ */
+final class FormulaInterpreter implements FormulaKernel {
+
+    private final Formula formula;
+
+    private final int[] operations;
+
+    FormulaInterpreter(Formula formula) {
+        this.formula = formula;
+        this.operations = new int[formula.size()];
+        for (int k = 0; k < operations.length; k++) {
+            operations[k] = formula.operation(k);
+        }
+    }
+
+    @Override
+    public int iterate(double zr, double zi, double cr, double ci, int step, int maxSteps,
+                       float[] fractions, int index) {
+        double[] re = new double[operations.length];
+        double[] im = new double[operations.length];
+        int result = operations.length - 1;
+        double checkR = zr;
+        double checkI = zi;
+        int period = 0;
+        int window = 1;
+        for (; step < maxSteps; step++) {
+            evaluate(re, im, zr, zi, cr, ci);
+            zr = re[result];
+            zi = im[result];
+            if (EscapeTimeKernel.escaped(zr, zi)) {
+                if (fractions != null) {
+                    for (int i = 0; i < SMOOTH_EXTRA_STEPS; i++) {
+                        evaluate(re, im, zr, zi, cr, ci);
+                        zr = re[result];
+                        zi = im[result];
+                    }
+                    fractions[index] = FormulaKernel.smoothFraction(zr, zi, formula.getDegree());
+                }
+                return step;
+            }
+            if (zr == checkR && zi == checkI) {
+                EscapeTimeKernel.saved(maxSteps - step - 1);
+                return maxSteps;
+            }
+            if (++period == window) {
+                checkR = zr;
+                checkI = zi;
+                period = 0;
+                window <<= 1;
+            }
+        }
+        return step;
+    }
+
+    private void evaluate(double[] re, double[] im, double zr, double zi, double cr, double ci) {
+        Formula formula = this.formula;
+        for (int k = 0; k < operations.length; k++) {
+            int a = formula.left(k);
+            int b = formula.right(k);
+            switch (operations[k]) {
+                case Formula.Z:
+                    re[k] = zr;
+                    im[k] = zi;
+                    break;
+                case Formula.C:
+                    re[k] = cr;
+                    im[k] = ci;
+                    break;
+                case Formula.CONSTANT:
+                    re[k] = formula.real(k);
+                    im[k] = formula.imaginary(k);
+                    break;
+                case Formula.ADD:
+                    re[k] = re[a] + re[b];
+                    im[k] = im[a] + im[b];
+                    break;
+                case Formula.SUBTRACT:
+                    re[k] = re[a] - re[b];
+                    im[k] = im[a] - im[b];
+                    break;
+                case Formula.MULTIPLY:
+                    if (a == b) {
+                        re[k] = re[a] * re[a] - im[a] * im[a];
+                        im[k] = 2.0 * re[a] * im[a];
+                    } else {
+                        re[k] = re[a] * re[b] - im[a] * im[b];
+                        im[k] = re[a] * im[b] + im[a] * re[b];
+                    }
+                    break;
+                case Formula.DIVIDE: {
+                    double denominator = re[b] * re[b] + im[b] * im[b];
+                    double r = (re[a] * re[b] + im[a] * im[b]) / denominator;
+                    im[k] = (im[a] * re[b] - re[a] * im[b]) / denominator;
+                    re[k] = r;
+                    break;
+                }
+                case Formula.NEGATE:
+                    re[k] = -re[a];
+                    im[k] = -im[a];
+                    break;
+                case Formula.MODULUS:
+                    re[k] = Math.sqrt(re[a] * re[a] + im[a] * im[a]);
+                    im[k] = 0.0;
+                    break;
+                case Formula.REAL:
+                    re[k] = re[a];
+                    im[k] = 0.0;
+                    break;
+                case Formula.IMAGINARY:
+                    re[k] = im[a];
+                    im[k] = 0.0;
+                    break;
+                case Formula.CONJUGATE:
+                    re[k] = re[a];
+                    im[k] = -im[a];
+                    break;
+                default:
+                    throw new IllegalStateException("unknown operation " + operations[k]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "interpreted " + formula;
+    }
+
+}
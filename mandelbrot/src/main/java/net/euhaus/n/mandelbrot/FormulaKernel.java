@@ -0,0 +1,54 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Escape-time iteration of one {@link Formula} on primitive doubles, with the same conventions as
+ * {@link EscapeTimeKernel#iterate(double, double, double, double, int, int)}: the count is the step in which
+ * {@code |z|} first exceeds 2, and an orbit that returns exactly to an earlier value ends with {@code maxSteps}.
+ */
+public interface FormulaKernel {
+
+    /**
+     * Extra iterations past the escape before the smooth count is taken, as in {@link EscapeTimeKernel#fraction}.
+     */
+    int SMOOTH_EXTRA_STEPS = 4;
+
+    /**
+     * Iterates from {@code z} at {@code step} and stores the smooth fraction of an escaped point in
+     * {@code fractions[index]} unless {@code fractions} is {@code null}.
+     */
+    int iterate(double zr, double zi, double cr, double ci, int step, int maxSteps, float[] fractions, int index);
+
+    /**
+     * The kernel for {@code formula}: compiled to bytecode on first use and cached, or interpreted if no compiler is
+     * available at runtime.
+     */
+    static FormulaKernel of(Formula formula) {
+        return FormulaCompiler.kernelFor(formula);
+    }
+
+    /**
+     * Compiles {@code formula} into a new hidden class, bypassing the cache. Returns {@code null} if the runtime
+     * has no Java compiler.
+     */
+    static FormulaKernel compiled(Formula formula) {
+        return FormulaCompiler.compile(formula);
+    }
+
+    static FormulaKernel interpreted(Formula formula) {
+        return new FormulaInterpreter(formula);
+    }
+
+    /**
+     * The smooth fraction of a point whose orbit reached {@code z} {@value #SMOOTH_EXTRA_STEPS} steps after its
+     * escape, for a formula of the given degree; 0 if the degree is below 2.
+     */
+    static float smoothFraction(double zr, double zi, double degree) {
+        if (degree < 2.0) {
+            return 0.0f;
+        }
+        double log2Modulus = 0.5 * Math.log(zr * zr + zi * zi) / Math.log(2.0);
+        double fraction = SMOOTH_EXTRA_STEPS + 1 - Math.log(log2Modulus) / Math.log(degree);
+        return Double.isFinite(fraction) ? (float) fraction : 0.0f;
+    }
+
+}
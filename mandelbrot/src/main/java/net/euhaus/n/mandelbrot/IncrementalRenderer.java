@@ -0,0 +1,67 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders a view that overlaps a previous frame on the same pixel grid, as after a resize or a pan: the overlap is
+ * copied and only the newly exposed strips are computed.
+ */
+public class IncrementalRenderer {
+
+    private final TileScheduler tileScheduler;
+
+    public IncrementalRenderer(TileScheduler tileScheduler) {
+        this.tileScheduler = tileScheduler;
+    }
+
+    /**
+     * Fills the {@code width x height} frame {@code steps} and {@code fractions} of {@code view}, whose pixel
+     * {@code (x, y)} is pixel {@code (x + dx, y + dy)} of the complete frame {@code previous}. Returns the number of
+     * pixels taken over from it.
+     */
+    public long render(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int width, int height,
+                       RenderJob previous, int dx, int dy, RenderMode mode, BooleanSupplier cancelled) {
+        int previousWidth = previous.getWidth();
+        int left = clamp(-dx, width);
+        int right = clamp(previousWidth - dx, width);
+        int top = clamp(-dy, height);
+        int bottom = clamp(previous.getHeight() - dy, height);
+        if (left >= right || top >= bottom) {
+            tileScheduler.render(view, steps, fractions, 0, 0, width, height, width, height, mode, cancelled);
+            return 0;
+        }
+
+        int[] previousSteps = previous.getSteps();
+        float[] previousFractions = previous.getFractions();
+        for (int y = top; y < bottom; y++) {
+            int from = (y + dy) * previousWidth + left + dx;
+            System.arraycopy(previousSteps, from, steps, y * width + left, right - left);
+            System.arraycopy(previousFractions, from, fractions, y * width + left, right - left);
+        }
+
+        compute(view, steps, fractions, 0, 0, width, top, width, height, mode, cancelled);
+        compute(view, steps, fractions, 0, bottom, width, height - bottom, width, height, mode, cancelled);
+        compute(view, steps, fractions, 0, top, left, bottom - top, width, height, mode, cancelled);
+        compute(view, steps, fractions, right, top, width - right, bottom - top, width, height, mode, cancelled);
+        return (long) (right - left) * (bottom - top);
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    private void compute(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int x0, int y0, int w, int h,
+                         int width, int height, RenderMode mode, BooleanSupplier cancelled) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        int[] strip = new int[w * h];
+        float[] stripFractions = new float[w * h];
+        tileScheduler.render(view, strip, stripFractions, x0, y0, w, h, width, height, mode, cancelled);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(strip, row * w, steps, (y0 + row) * width + x0, w);
+            System.arraycopy(stripFractions, row * w, fractions, (y0 + row) * width + x0, w);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Chooses the iteration limit of a view. Shallow views waste most of a fixed limit on interior pixels, while deep
+ * views need far more iterations before boundary detail separates from the interior.
+ *
+ * The width of the view gives a ceiling, and a low-resolution pre-pass up to that ceiling shows how many
+ * iterations the escaping pixels of this particular view actually need.
+ */
+public final class IterationLimit {
+
+    public static final int MIN_STEPS = 64;
+
+    public static final int MAX_STEPS = 1 << 16;
+
+    private static final int PROBE_SIZE = 64;
+
+    // Share of the escaping probe pixels that must escape below the chosen limit, and the margin added on top.
+    private static final double COVERAGE = 0.995;
+
+    private static final double HEADROOM = 1.25;
+
+    private IterationLimit() {
+    }
+
+    /**
+     * Rule-of-thumb limit for a view of the given width on the real axis: a few hundred iterations for the whole
+     * set, and roughly 150 more for every tenfold zoom.
+     */
+    public static int forSpan(double span) {
+        double zoom = Math.max(1.0, 3.0 / Math.abs(span));
+        return clamp((int) (200 + 150 * Math.log10(zoom)));
+    }
+
+    /**
+     * Returns {@code view} with a limit chosen from its width and a {@value #PROBE_SIZE}x{@value #PROBE_SIZE}
+     * pre-pass on {@code tileScheduler}.
+     */
+    public static <S, C> Mandelbrot<S, C> choose(Mandelbrot<S, C> view, TileScheduler tileScheduler) {
+        return choose(view, tileScheduler, () -> false);
+    }
+
+    /**
+     * Like {@link #choose(Mandelbrot, TileScheduler)}, but the pre-pass stops once {@code cancelled} turns true and
+     * {@code view} is then returned unchanged. The result is derived from the pre-pass view, so an engine that
+     * prepares per view, like the reference orbit of {@link MandelbrotPerturbation}, does so only once.
+     */
+    public static <S, C> Mandelbrot<S, C> choose(Mandelbrot<S, C> view, TileScheduler tileScheduler,
+                                                 BooleanSupplier cancelled) {
+        int ceiling = clamp(4 * forSpan(view.getRealSpan()));
+        Mandelbrot<S, C> probe = view.withMaxSteps(ceiling);
+        int[] steps = new int[PROBE_SIZE * PROBE_SIZE];
+        tileScheduler.render(probe, steps, 0, 0, PROBE_SIZE, PROBE_SIZE, PROBE_SIZE, PROBE_SIZE, cancelled);
+        if (cancelled.getAsBoolean()) {
+            return view;
+        }
+
+        int[] histogram = new int[ceiling];
+        int escaped = 0;
+        for (int step : steps) {
+            if (step < ceiling) {
+                histogram[step]++;
+                escaped++;
+            }
+        }
+        if (escaped == 0) {
+            return probe.withMaxSteps(forSpan(view.getRealSpan()));
+        }
+
+        int needed = (int) Math.ceil(escaped * COVERAGE);
+        int step = 0;
+        int covered = histogram[0];
+        while (covered < needed) {
+            covered += histogram[++step];
+        }
+        return probe.withMaxSteps(Math.min(ceiling, clamp((int) Math.ceil((step + 1) * HEADROOM))));
+    }
+
+    private static int clamp(int steps) {
+        return Math.max(MIN_STEPS, Math.min(MAX_STEPS, steps));
+    }
+
+}
@@ -20,13 +20,23 @@ public abstract class Mandelbrot<S,C> {
 
     private static int resolution = 600;
 
-    public static final int MAX_STEPS = 350;
+    public static final int DEFAULT_MAX_STEPS = 350;
+
+    private final int maxSteps;
 
     public Mandelbrot(S minR, S maxR, S minIm, S maxIm) {
+        this(minR, maxR, minIm, maxIm, DEFAULT_MAX_STEPS);
+    }
+
+    public Mandelbrot(S minR, S maxR, S minIm, S maxIm, int maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("maximum steps must not be negative: " + maxSteps);
+        }
         this.maxR = maxR;
         this.maxIm = maxIm;
         this.minR = minR;
         this.minIm = minIm;
+        this.maxSteps = maxSteps;
     }
 
     public final int getConvergence(C c) {
@@ -35,6 +45,54 @@ public abstract class Mandelbrot<S,C> {
 
     protected abstract int applySeries(C z, C c, int step);
 
+    public abstract void fillConvergence(int[] steps, int offset, int scanline,
+                                         int x0, int y0, int w, int h, int width, int height);
+
+    /**
+     * Like {@link #fillConvergence(int[], int, int, int, int, int, int, int, int)}, and also writes the difference
+     * between the smooth and the integer iteration count of escaped pixels (see {@link EscapeTimeKernel#fraction})
+     * to the same indices of {@code fractions}, 0 for pixels that do not escape. Engines that cannot provide it write
+     * 0 everywhere.
+     */
+    public void fillConvergence(int[] steps, float[] fractions, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillConvergence(steps, offset, scanline, x0, y0, w, h, width, height);
+        for (int row = 0; row < h; row++) {
+            int index = offset + row * scanline;
+            Arrays.fill(fractions, index, index + w, 0.0f);
+        }
+    }
+
+    /**
+     * Fills {@code w x h} samples taken every {@code stride} pixels from pixel {@code (x0, y0)} on: sample
+     * {@code (i, j)} is pixel {@code (x0 + i * stride, y0 + j * stride)} of the {@code width x height} view and goes to
+     * index {@code offset + j * scanline + i} of {@code steps} and, unless it is {@code null}, {@code fractions}.
+     * Every sample gets exactly the value it has in a full render.
+     *
+     * This fallback computes the samples one by one; engines override it to compute sample rows in one go.
+     */
+    public void fillSamples(int[] steps, float[] fractions, int offset, int scanline,
+                            int x0, int y0, int w, int h, int stride, int width, int height) {
+        if (stride == 1) {
+            if (fractions != null) {
+                fillConvergence(steps, fractions, offset, scanline, x0, y0, w, h, width, height);
+            } else {
+                fillConvergence(steps, offset, scanline, x0, y0, w, h, width, height);
+            }
+            return;
+        }
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                int index = offset + j * scanline + i;
+                if (fractions != null) {
+                    fillConvergence(steps, fractions, index, 1, x0 + i * stride, y0 + j * stride, 1, 1, width, height);
+                } else {
+                    fillConvergence(steps, index, 1, x0 + i * stride, y0 + j * stride, 1, 1, width, height);
+                }
+            }
+        }
+    }
+
     protected abstract C zero();
 
     public S rescaleToReal(S unscaledValue, S oldLowerBound, S oldUpperbound) {
@@ -45,6 +103,20 @@ public abstract class Mandelbrot<S,C> {
         return rescaleToNewScale(unscaledValue, oldLowerBound, oldUpperbound, getMinIm(), getMaxIm());
     }
 
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * The same view with another iteration limit.
+     */
+    public abstract Mandelbrot<S, C> withMaxSteps(int maxSteps);
+
+    /**
+     * Width of the view on the real axis, to double precision.
+     */
+    public abstract double getRealSpan();
+
     public abstract S rescaleToNewScale(S unscaledValue, S oldLowerBound, S oldUpperbound, S newLowerbound, S newUpperbound);
 
     public S getMaxR() {
@@ -0,0 +1,306 @@
+package net.euhaus.n.mandelbrot;
+
+import org.apache.commons.math3.complex.Complex;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless batch renderer for images far larger than a window.
+ *
+ * The image is computed band by band on all cores and every band is streamed to disk before the next one starts,
+ * so the heap stays at one band regardless of the image size. Raw counts are written as little-endian 32-bit
+ * integers, row by row, through a memory-mapped file; the PNG is encoded on the fly.
+ *
+ * In {@link RenderMode#BUDDHABROT} the orbit density is accumulated for the whole image first, and the counts are then
+ * written the same way, clamped to 32 bits.
+ *
+ * With {@code --frames} a zoom animation is written as a numbered PNG sequence by a {@link ZoomAnimator}.
+ */
+public class MandelbrotCli {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: MandelbrotCli [options] (--png <file> | --raw <file>)...",
+            "  --min-r <r> --max-r <r>      real range (default -2 .. 1)",
+            "  --min-im <i> --max-im <i>    imaginary range (default -1.5 .. 1.5)",
+            "  --width <px> --height <px>   image size (default 800 x 800)",
+            "  --formula <expr>             iterate another formula, e.g. 'z^3 + c' or '(|re z| + i|im z|)^2 + c'",
+            "  --julia <re>,<im>            render the Julia set of the formula for this constant",
+            "  --max-steps <n|auto>         iteration limit, auto chooses it from the view (default "
+                    + Mandelbrot.DEFAULT_MAX_STEPS + ")",
+            "  --band-rows <n>              rows per band (default: about 4M pixels per band)",
+            "  --parallelism <n>            worker threads (default: all cores)",
+            "  --tile-size <px>             tile size of the scheduler (default " + TileScheduler.DEFAULT_TILE_SIZE + ")",
+            "  --mode <per-pixel|boundary-tracing|buddhabrot>",
+            "  --samples <n>                buddhabrot: random points to draw (default 100 per pixel)",
+            "  --min-steps <n>              buddhabrot: skip orbits that escape in fewer steps (default 0)",
+            "  --seed <n>                   buddhabrot: random seed (default 0)",
+            "  --frames <n>                 render a zoom animation of n frames; --png is then a pattern such as",
+            "                               zoom-%05d.png that numbers them",
+            "  --zoom <factor>              animation: zoom per frame (default 1.05)",
+            "  --target <re>,<im>           animation: point to zoom toward (default: center of the view)",
+            "  --png <file>                 write a PNG colored with the GUI palette",
+            "  --raw <file>                 write raw iteration counts (int32, little-endian, row-major)");
+
+    private static final int BAND_PIXELS = 1 << 22;
+
+    public static void main(String[] args) {
+        Map<String, String> options;
+        try {
+            options = parse(args);
+            if (!options.containsKey("png") && !options.containsKey("raw")) {
+                throw new IllegalArgumentException("no output given");
+            }
+            new MandelbrotCli().render(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("rendering failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("unexpected argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private void render(Map<String, String> options) throws IOException {
+        int width = intOption(options, "width", 800);
+        int height = intOption(options, "height", 800);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("image must not be empty: " + width + "x" + height);
+        }
+        boolean adaptive = "auto".equals(options.get("max-steps"));
+        double minR = doubleOption(options, "min-r", -2.0);
+        double maxR = doubleOption(options, "max-r", 1.0);
+        double minIm = doubleOption(options, "min-im", -1.5);
+        double maxIm = doubleOption(options, "max-im", 1.5);
+        int maxSteps = adaptive ? Mandelbrot.DEFAULT_MAX_STEPS
+                : intOption(options, "max-steps", Mandelbrot.DEFAULT_MAX_STEPS);
+        Mandelbrot<?, ?> mandelbrot;
+        if (options.containsKey("formula") || options.containsKey("julia")) {
+            Formula formula = Formula.parse(options.getOrDefault("formula", Formula.MANDELBROT.toString()));
+            Complex julia = options.containsKey("julia") ? MandelbrotFormula.parseConstant(options.get("julia")) : null;
+            MandelbrotFormula view = new MandelbrotFormula(formula, julia, minR, maxR, minIm, maxIm, maxSteps);
+            if (view.getKernel() instanceof FormulaInterpreter) {
+                System.err.println("formula kernel: " + view.getKernel() + " (no Java compiler at runtime)");
+            }
+            mandelbrot = view;
+        } else {
+            mandelbrot = new MandelbrotIEEE754(minR, maxR, minIm, maxIm, maxSteps);
+        }
+        int bandRows = intOption(options, "band-rows", Math.max(1, BAND_PIXELS / width));
+        RenderMode mode = RenderMode.valueOf(options.getOrDefault("mode", "per-pixel")
+                .toUpperCase(Locale.ROOT).replace('-', '_'));
+        if (mode == RenderMode.TILE_CACHE) {
+            throw new IllegalArgumentException("the tile cache is not supported for batch rendering");
+        }
+        if (mode == RenderMode.BUDDHABROT) {
+            if (!(mandelbrot instanceof MandelbrotIEEE754) || adaptive) {
+                throw new IllegalArgumentException("the Buddhabrot takes neither a formula nor --max-steps auto");
+            }
+            renderBuddhabrot((MandelbrotIEEE754) mandelbrot, width, height, options);
+            return;
+        }
+        if (options.containsKey("frames")) {
+            if (mandelbrot instanceof MandelbrotFormula || adaptive || mode != RenderMode.PER_PIXEL
+                    || options.containsKey("raw") || !options.containsKey("png")) {
+                throw new IllegalArgumentException("an animation takes a --png pattern and no formula, --raw, --mode "
+                        + "or --max-steps auto");
+            }
+            renderAnimation(width, height, maxSteps, options);
+            return;
+        }
+        TileScheduler tileScheduler = new TileScheduler(
+                intOption(options, "parallelism", Runtime.getRuntime().availableProcessors()),
+                intOption(options, "tile-size", TileScheduler.DEFAULT_TILE_SIZE));
+
+        if (adaptive) {
+            mandelbrot = IterationLimit.choose(mandelbrot, tileScheduler);
+            System.err.println("iteration limit " + mandelbrot.getMaxSteps());
+        }
+
+        Path rawPath = options.containsKey("raw") ? Paths.get(options.get("raw")) : null;
+        Path pngPath = options.containsKey("png") ? Paths.get(options.get("png")) : null;
+        long start = System.nanoTime();
+        try (FileChannel raw = rawPath == null ? null : FileChannel.open(rawPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream pngOut = pngPath == null ? null : new BufferedOutputStream(Files.newOutputStream(pngPath));
+             PngStreamWriter png = pngOut == null ? null : new PngStreamWriter(pngOut, width, height)) {
+
+            int[] steps = new int[Math.min(bandRows, height) * width];
+            int[] argb = png == null ? null : new int[width];
+            for (int y0 = 0; y0 < height; y0 += bandRows) {
+                int rows = Math.min(bandRows, height - y0);
+                tileScheduler.render(mandelbrot, steps, 0, y0, width, rows, width, height, mode, () -> false);
+
+                if (raw != null) {
+                    MappedByteBuffer band = raw.map(FileChannel.MapMode.READ_WRITE, 4L * y0 * width, 4L * rows * width);
+                    band.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(steps, 0, rows * width);
+                    band.force();
+                }
+                if (png != null) {
+                    for (int row = 0; row < rows; row++) {
+                        Palette.INFERNO.toArgb(steps, row * width, argb, 0, width);
+                        png.writeRow(argb, 0);
+                    }
+                }
+                System.err.printf(Locale.ROOT, "\r%5.1f%%", 100.0 * (y0 + rows) / height);
+            }
+        } finally {
+            tileScheduler.shutdown();
+        }
+        System.err.printf(Locale.ROOT, "%nrendered %dx%d in %.1f s%n", width, height, (System.nanoTime() - start) / 1e9);
+    }
+
+    private void renderAnimation(int width, int height, int maxSteps, Map<String, String> options) throws IOException {
+        Viewport first = new Viewport(decimalOption(options, "min-r", "-2"), decimalOption(options, "max-r", "1"),
+                decimalOption(options, "min-im", "-1.5"), decimalOption(options, "max-im", "1.5"));
+        BigDecimal targetR;
+        BigDecimal targetIm;
+        if (options.containsKey("target")) {
+            String[] parts = options.get("target").split(",");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("--target expects <re>,<im>: " + options.get("target"));
+            }
+            targetR = decimal("target", parts[0].trim());
+            targetIm = decimal("target", parts[1].trim());
+        } else {
+            targetR = first.getMinR().add(first.getMaxR()).divide(BigDecimal.valueOf(2));
+            targetIm = first.getMinIm().add(first.getMaxIm()).divide(BigDecimal.valueOf(2));
+        }
+        int frames = intOption(options, "frames", 1);
+        double zoom = doubleOption(options, "zoom", 1.05);
+        String pattern = options.get("png");
+        if (String.format(Locale.ROOT, pattern, 0).equals(String.format(Locale.ROOT, pattern, 1))) {
+            throw new IllegalArgumentException("--png needs a frame number such as %05d for an animation: " + pattern);
+        }
+        int parallelism = intOption(options, "parallelism", Runtime.getRuntime().availableProcessors());
+        TileScheduler tileScheduler = new TileScheduler(parallelism,
+                intOption(options, "tile-size", TileScheduler.DEFAULT_TILE_SIZE));
+        ZoomAnimator animator = new ZoomAnimator(tileScheduler, Math.max(1, parallelism / 4));
+        long start = System.nanoTime();
+        try {
+            animator.animate(first, targetR, targetIm, zoom, frames, width, height, maxSteps,
+                    new Colorizer(Palette.INFERNO), frame -> Paths.get(String.format(Locale.ROOT, pattern, frame)),
+                    () -> false, frame -> System.err.printf(Locale.ROOT, "\rframe %d of %d", frame + 1, frames));
+        } finally {
+            tileScheduler.shutdown();
+        }
+        System.err.printf(Locale.ROOT, "%nrendered %d frames of %dx%d in %.1f s, %.1f%% of the pixels computed%n",
+                frames, width, height, (System.nanoTime() - start) / 1e9,
+                100.0 * animator.getComputedPixels() / ((double) frames * width * height));
+    }
+
+    private void renderBuddhabrot(MandelbrotIEEE754 view, int width, int height, Map<String, String> options)
+            throws IOException {
+        long samples = longOption(options, "samples", 100L * width * height);
+        int minSteps = intOption(options, "min-steps", 0);
+        long seed = longOption(options, "seed", 0);
+        BuddhabrotRenderer renderer = new BuddhabrotRenderer(
+                intOption(options, "parallelism", Runtime.getRuntime().availableProcessors()),
+                BuddhabrotRenderer.DEFAULT_BATCH_SIZE);
+        long start = System.nanoTime();
+        long[] histogram;
+        try {
+            // Batches complete on several workers at once; print at most one line per percent.
+            AtomicLong printed = new AtomicLong(-1);
+            histogram = renderer.render(view, width, height, minSteps, samples, seed, () -> false, drawn -> {
+                long percent = 100 * drawn / samples;
+                long last = printed.get();
+                if (percent > last && printed.compareAndSet(last, percent)) {
+                    System.err.printf(Locale.ROOT, "\r%3d%%", percent);
+                }
+            });
+        } finally {
+            renderer.shutdown();
+        }
+
+        if (options.containsKey("raw")) {
+            try (FileChannel raw = FileChannel.open(Paths.get(options.get("raw")), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = raw.map(FileChannel.MapMode.READ_WRITE, 0, 4L * histogram.length);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (long count : histogram) {
+                    buffer.putInt((int) Math.min(Integer.MAX_VALUE, count));
+                }
+                buffer.force();
+            }
+        }
+        if (options.containsKey("png")) {
+            long peak = BuddhabrotRenderer.peak(histogram, 0.999);
+            try (OutputStream pngOut = new BufferedOutputStream(Files.newOutputStream(Paths.get(options.get("png"))));
+                 PngStreamWriter png = new PngStreamWriter(pngOut, width, height)) {
+                int[] argb = new int[width];
+                for (int y = 0; y < height; y++) {
+                    BuddhabrotRenderer.toArgb(histogram, y * width, peak, Palette.INFERNO, argb, 0, width);
+                    png.writeRow(argb, 0);
+                }
+            }
+        }
+        System.err.printf(Locale.ROOT, "%nrendered %d samples into %dx%d in %.1f s%n", samples, width, height,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects an integer: " + value);
+        }
+    }
+
+    private static long longOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects an integer: " + value);
+        }
+    }
+
+    private static BigDecimal decimalOption(Map<String, String> options, String name, String defaultValue) {
+        return decimal(name, options.getOrDefault(name, defaultValue));
+    }
+
+    private static BigDecimal decimal(String name, String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number: " + value);
+        }
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number: " + value);
+        }
+    }
+
+}
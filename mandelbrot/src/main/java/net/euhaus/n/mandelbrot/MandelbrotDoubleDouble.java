@@ -0,0 +1,164 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Mid-depth engine on double-double arithmetic (about 106 bits), for views too narrow for
+ * {@link MandelbrotIEEE754} but far from needing {@link MandelbrotPerturbation}. The kernel keeps every value as a
+ * pair of local doubles and allocates nothing per pixel.
+ *
+ * Periodic orbits end early as in {@link EscapeTimeKernel}; the analytic cardioid test is left out because the
+ * double approximation of {@code c} it would need is too coarse at these depths.
+ */
+public class MandelbrotDoubleDouble extends Mandelbrot<DoubleDouble, DoubleDoubleComplex> {
+
+    public MandelbrotDoubleDouble(DoubleDouble minR, DoubleDouble maxR, DoubleDouble minIm, DoubleDouble maxIm) {
+        super(minR, maxR, minIm, maxIm);
+    }
+
+    public MandelbrotDoubleDouble(DoubleDouble minR, DoubleDouble maxR, DoubleDouble minIm, DoubleDouble maxIm,
+                                  int maxSteps) {
+        super(minR, maxR, minIm, maxIm, maxSteps);
+    }
+
+    @Override
+    public MandelbrotDoubleDouble withMaxSteps(int maxSteps) {
+        return new MandelbrotDoubleDouble(getMinR(), getMaxR(), getMinIm(), getMaxIm(), maxSteps);
+    }
+
+    @Override
+    public double getRealSpan() {
+        return getMaxR().subtract(getMinR()).doubleValue();
+    }
+
+    @Override
+    protected int applySeries(DoubleDoubleComplex z, DoubleDoubleComplex c, int step) {
+        return iterate(z.getReal().getHi(), z.getReal().getLo(), z.getImaginary().getHi(), z.getImaginary().getLo(),
+                c.getReal().getHi(), c.getReal().getLo(), c.getImaginary().getHi(), c.getImaginary().getLo(),
+                step, getMaxSteps(), null, 0);
+    }
+
+    @Override
+    protected DoubleDoubleComplex zero() {
+        return DoubleDoubleComplex.ZERO;
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, null, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, float[] fractions, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, fractions, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillSamples(int[] steps, float[] fractions, int offset, int scanline,
+                            int x0, int y0, int w, int h, int stride, int width, int height) {
+        DoubleDouble minR = getMinR();
+        DoubleDouble minIm = getMinIm();
+        DoubleDouble spanR = getMaxR().subtract(minR);
+        DoubleDouble spanIm = getMaxIm().subtract(minIm);
+        int maxSteps = getMaxSteps();
+        for (int j = 0; j < h; j++) {
+            DoubleDouble ci = spanIm.multiply((double) (y0 + j * stride) / height).add(minIm);
+            int index = offset + j * scanline;
+            for (int i = 0; i < w; i++) {
+                // One DoubleDouble per pixel would be the only allocation; inline c = minR + x / width * spanR.
+                double f = (double) (x0 + i * stride) / width;
+                double p = spanR.getHi() * f;
+                double e = Math.fma(spanR.getHi(), f, -p) + spanR.getLo() * f;
+                double s = p + minR.getHi();
+                double v = s - p;
+                e += (p - (s - v)) + (minR.getHi() - v) + minR.getLo();
+                double crh = s + e;
+                double crl = e - (crh - s);
+                if (fractions != null) {
+                    fractions[index] = 0.0f;
+                }
+                steps[index] = iterate(0.0, 0.0, 0.0, 0.0, crh, crl, ci.getHi(), ci.getLo(), 0, maxSteps,
+                        fractions, index);
+                index++;
+            }
+        }
+    }
+
+    private static int iterate(double zrh, double zrl, double zih, double zil,
+                               double crh, double crl, double cih, double cil, int step, int maxSteps,
+                               float[] fractions, int index) {
+        double checkRh = zrh, checkRl = zrl, checkIh = zih, checkIl = zil;
+        int period = 0;
+        int window = 1;
+        for (; step < maxSteps; step++) {
+            // zr^2
+            double p = zrh * zrh;
+            double e = Math.fma(zrh, zrh, -p) + 2 * zrh * zrl;
+            double rrh = p + e;
+            double rrl = e - (rrh - p);
+            // zi^2
+            p = zih * zih;
+            e = Math.fma(zih, zih, -p) + 2 * zih * zil;
+            double iih = p + e;
+            double iil = e - (iih - p);
+            // 2 zr zi
+            p = zrh * zih;
+            e = Math.fma(zrh, zih, -p) + (zrh * zil + zrl * zih);
+            double rih = 2 * (p + e);
+            double ril = 2 * (e - (p + e - p));
+
+            // zr' = zr^2 - zi^2 + cr
+            double s = rrh - iih;
+            double v = s - rrh;
+            e = (rrh - (s - v)) + (-iih - v) + (rrl - iil);
+            double th = s + e;
+            double tl = e - (th - s);
+            s = th + crh;
+            v = s - th;
+            e = (th - (s - v)) + (crh - v) + (tl + crl);
+            double nrh = s + e;
+            double nrl = e - (nrh - s);
+
+            // zi' = 2 zr zi + ci
+            s = rih + cih;
+            v = s - rih;
+            e = (rih - (s - v)) + (cih - v) + (ril + cil);
+            zih = s + e;
+            zil = e - (zih - s);
+            zrh = nrh;
+            zrl = nrl;
+
+            if (zrh * zrh + zih * zih > 4.0) {
+                if (fractions != null) {
+                    // The smooth fraction only needs a few digits, the high parts are plenty.
+                    fractions[index] = EscapeTimeKernel.fraction(zrh, zih, crh, cih);
+                }
+                return step;
+            }
+            if (zrh == checkRh && zrl == checkRl && zih == checkIh && zil == checkIl) {
+                EscapeTimeKernel.saved(maxSteps - step - 1);
+                return maxSteps;
+            }
+            if (++period == window) {
+                checkRh = zrh;
+                checkRl = zrl;
+                checkIh = zih;
+                checkIl = zil;
+                period = 0;
+                window <<= 1;
+            }
+        }
+        return step;
+    }
+
+    @Override
+    public DoubleDouble rescaleToNewScale(DoubleDouble unscaledValue, DoubleDouble oldLowerBound,
+                                          DoubleDouble oldUpperbound, DoubleDouble newLowerbound,
+                                          DoubleDouble newUpperbound) {
+        return unscaledValue.subtract(oldLowerBound)
+                .divide(oldUpperbound.subtract(oldLowerBound))
+                .multiply(newUpperbound.subtract(newLowerbound))
+                .add(newLowerbound);
+    }
+
+}
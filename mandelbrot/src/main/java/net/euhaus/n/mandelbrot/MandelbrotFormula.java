@@ -0,0 +1,139 @@
+package net.euhaus.n.mandelbrot;
+
+import org.apache.commons.math3.complex.Complex;
+
+/**
+ * Engine for an arbitrary {@link Formula}, iterated in doubles by the {@link FormulaKernel} compiled for it.
+ *
+ * Without a Julia constant, every point {@code c} of the view iterates from {@code z = 0}, which gives the parameter
+ * plane of the formula. With one, every point is the start value {@code z} and the constant is {@code c}. There are no
+ * interior shortcuts besides cycle detection, since the cardioid test only holds for {@code z^2 + c}.
+ */
+public class MandelbrotFormula extends Mandelbrot<Double, Complex> {
+
+    private final Formula formula;
+
+    private final Complex julia;
+
+    private final FormulaKernel kernel;
+
+    public MandelbrotFormula(Formula formula, Double minR, Double maxR, Double minIm, Double maxIm, int maxSteps) {
+        this(formula, null, minR, maxR, minIm, maxIm, maxSteps);
+    }
+
+    /**
+     * The Julia set of {@code formula} for the constant {@code julia}, or its parameter plane if that is {@code null}.
+     */
+    public MandelbrotFormula(Formula formula, Complex julia, Double minR, Double maxR, Double minIm, Double maxIm,
+                             int maxSteps) {
+        super(minR, maxR, minIm, maxIm, maxSteps);
+        this.formula = formula;
+        this.julia = julia;
+        this.kernel = FormulaKernel.of(formula);
+    }
+
+    /**
+     * Parses a Julia constant given as {@code re,im}.
+     */
+    public static Complex parseConstant(String text) {
+        String[] parts = text.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("expected <re>,<im>: " + text);
+        }
+        try {
+            return new Complex(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected <re>,<im>: " + text);
+        }
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+
+    /**
+     * The constant of the Julia set, or {@code null} for the parameter plane.
+     */
+    public Complex getJulia() {
+        return julia;
+    }
+
+    public FormulaKernel getKernel() {
+        return kernel;
+    }
+
+    @Override
+    public MandelbrotFormula withMaxSteps(int maxSteps) {
+        return new MandelbrotFormula(formula, julia, getMinR(), getMaxR(), getMinIm(), getMaxIm(), maxSteps);
+    }
+
+    @Override
+    public double getRealSpan() {
+        return getMaxR() - getMinR();
+    }
+
+    // For a Julia set c is the point, which is the start value of a fresh orbit.
+    @Override
+    protected int applySeries(Complex z, Complex c, int step) {
+        if (julia == null) {
+            return kernel.iterate(z.getReal(), z.getImaginary(), c.getReal(), c.getImaginary(), step, getMaxSteps(),
+                    null, 0);
+        }
+        Complex start = step == 0 ? c : z;
+        return kernel.iterate(start.getReal(), start.getImaginary(), julia.getReal(), julia.getImaginary(), step,
+                getMaxSteps(), null, 0);
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, null, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, float[] fractions, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, fractions, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillSamples(int[] steps, float[] fractions, int offset, int scanline,
+                            int x0, int y0, int w, int h, int stride, int width, int height) {
+        FormulaKernel kernel = this.kernel;
+        int maxSteps = getMaxSteps();
+        double minR = getMinR();
+        double spanR = getMaxR() - minR;
+        double minIm = getMinIm();
+        double spanIm = getMaxIm() - minIm;
+        boolean plane = julia == null;
+        double juliaR = plane ? 0.0 : julia.getReal();
+        double juliaI = plane ? 0.0 : julia.getImaginary();
+        for (int j = 0; j < h; j++) {
+            double pi = ((double) (y0 + j * stride) / height) * spanIm + minIm;
+            int index = offset + j * scanline;
+            for (int i = 0; i < w; i++) {
+                double pr = ((double) (x0 + i * stride) / width) * spanR + minR;
+                if (fractions != null) {
+                    fractions[index] = 0.0f;
+                }
+                steps[index] = plane
+                        ? kernel.iterate(0.0, 0.0, pr, pi, 0, maxSteps, fractions, index)
+                        : kernel.iterate(pr, pi, juliaR, juliaI, 0, maxSteps, fractions, index);
+                index++;
+            }
+        }
+    }
+
+    @Override
+    protected Complex zero() {
+        return Complex.ZERO;
+    }
+
+    @Override
+    public Double rescaleToNewScale(Double unscaledValue, Double oldLowerBound, Double oldUpperbound,
+                                   Double newLowerbound, Double newUpperbound) {
+        return (unscaledValue - oldLowerBound) / (oldUpperbound - oldLowerBound) * (newUpperbound - newLowerbound)
+                + newLowerbound;
+    }
+
+}
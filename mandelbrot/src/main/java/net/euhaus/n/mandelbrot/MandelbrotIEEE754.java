@@ -9,20 +9,50 @@ import java.util.Set;
 
 public class MandelbrotIEEE754 extends Mandelbrot<Double, Complex> {
 
+    private static final TileKernel KERNEL = TileKernel.preferred();
+
     public MandelbrotIEEE754(Double minR, Double maxR, Double minIm, Double maxIm) {
         super(minR, maxR, minIm, maxIm);
     }
 
+    public MandelbrotIEEE754(Double minR, Double maxR, Double minIm, Double maxIm, int maxSteps) {
+        super(minR, maxR, minIm, maxIm, maxSteps);
+    }
+
+    @Override
+    public MandelbrotIEEE754 withMaxSteps(int maxSteps) {
+        return new MandelbrotIEEE754(getMinR(), getMaxR(), getMinIm(), getMaxIm(), maxSteps);
+    }
+
+    @Override
+    public double getRealSpan() {
+        return getMaxR() - getMinR();
+    }
+
     @Override
     public int applySeries(Complex z, Complex c, int step) {
-        if (step < MAX_STEPS) {
-            z = z.multiply(z).add(c);
-            if (z.abs() > 2)
-                return step;
-            return applySeries(z, c, step + 1);
-        }
-
-        return step;
+        return EscapeTimeKernel.iterate(z.getReal(), z.getImaginary(), c.getReal(), c.getImaginary(), step, getMaxSteps());
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, null, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, float[] fractions, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, fractions, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    @Override
+    public void fillSamples(int[] steps, float[] fractions, int offset, int scanline,
+                            int x0, int y0, int w, int h, int stride, int width, int height) {
+        double minR = getMinR();
+        double minIm = getMinIm();
+        KERNEL.fill(steps, fractions, offset, scanline, x0, y0, w, h, stride, width, height,
+                minR, getMaxR() - minR, minIm, getMaxIm() - minIm, getMaxSteps());
     }
 
     @Override
@@ -0,0 +1,295 @@
+package net.euhaus.n.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Deep-zoom engine based on perturbation theory.
+ *
+ * A single reference orbit {@code X} at the centre of the view is iterated in {@link BigDecimal}. Every pixel then
+ * only iterates its {@code double} offset {@code d} from that orbit, {@code d' = 2Xd + d^2 + dc}. Wherever the
+ * offset would lose precision against the reference ({@code |X + d| < |d|}, the classic glitch condition) or the
+ * reference escapes, the pixel is rebased onto the start of the orbit with {@code d = X + d}, which amounts to
+ * switching to a fresh reference without computing one. A third order series approximation of {@code d} in
+ * {@code dc} skips the iterations in which the whole view still moves as one. A pixel whose state (reference index
+ * and offset) repeats exactly is periodic and ends early with the interior count.
+ *
+ * Offsets are plain doubles, so views down to roughly 1e-300 are supported.
+ */
+public class MandelbrotPerturbation extends Mandelbrot<BigDecimal, BigComplex> {
+
+    private static final int GUARD_DIGITS = 20;
+
+    // Largest error of the truncated series, relative to its leading term, that still counts as exact.
+    private static final double SERIES_TOLERANCE = 1e-12;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    private static final BigDecimal FOUR = BigDecimal.valueOf(4);
+
+    private final MathContext mc;
+
+    private volatile Reference reference;
+
+    public MandelbrotPerturbation(BigDecimal minR, BigDecimal maxR, BigDecimal minIm, BigDecimal maxIm) {
+        this(minR, maxR, minIm, maxIm, DEFAULT_MAX_STEPS);
+    }
+
+    public MandelbrotPerturbation(BigDecimal minR, BigDecimal maxR, BigDecimal minIm, BigDecimal maxIm, int maxSteps) {
+        super(minR, maxR, minIm, maxIm, maxSteps);
+        this.mc = contextFor(maxR.subtract(minR).abs().max(maxIm.subtract(minIm).abs()));
+    }
+
+    private static MathContext contextFor(BigDecimal span) {
+        if (span.signum() == 0) {
+            return new MathContext(GUARD_DIGITS);
+        }
+        int magnitude = span.precision() - span.scale() - 1;
+        return new MathContext(Math.max(GUARD_DIGITS, GUARD_DIGITS - magnitude));
+    }
+
+    /**
+     * The same view with another limit. A reference orbit this view already computed up to at least
+     * {@code maxSteps} is shared rather than iterated again in {@link BigDecimal}; pixels end at the new limit
+     * whatever the length of the orbit.
+     */
+    @Override
+    public MandelbrotPerturbation withMaxSteps(int maxSteps) {
+        MandelbrotPerturbation view = new MandelbrotPerturbation(getMinR(), getMaxR(), getMinIm(), getMaxIm(),
+                maxSteps);
+        Reference ref = reference;
+        if (ref != null && ref.maxSteps >= maxSteps) {
+            view.reference = ref;
+        }
+        return view;
+    }
+
+    @Override
+    public double getRealSpan() {
+        return getMaxR().subtract(getMinR(), mc).doubleValue();
+    }
+
+    public MathContext getMathContext() {
+        return mc;
+    }
+
+    @Override
+    protected int applySeries(BigComplex z, BigComplex c, int step) {
+        for (int maxSteps = getMaxSteps(); step < maxSteps; step++) {
+            z = z.squareAdd(c, mc);
+            if (z.absSquared(mc).compareTo(FOUR) > 0) {
+                return step;
+            }
+        }
+        return step;
+    }
+
+    @Override
+    protected BigComplex zero() {
+        return BigComplex.ZERO;
+    }
+
+    @Override
+    public void fillConvergence(int[] steps, int offset, int scanline,
+                                int x0, int y0, int w, int h, int width, int height) {
+        fillSamples(steps, null, offset, scanline, x0, y0, w, h, 1, width, height);
+    }
+
+    // Smooth fractions are not tracked through rebasing, they stay 0.
+    @Override
+    public void fillSamples(int[] steps, float[] fractions, int offset, int scanline,
+                            int x0, int y0, int w, int h, int stride, int width, int height) {
+        Reference ref = reference();
+        int maxSteps = getMaxSteps();
+        double spanR = getMaxR().subtract(getMinR(), mc).doubleValue();
+        double spanIm = getMaxIm().subtract(getMinIm(), mc).doubleValue();
+        for (int j = 0; j < h; j++) {
+            double dci = ((double) (y0 + j * stride) / height) * spanIm + ref.offsetIm;
+            int index = offset + j * scanline;
+            for (int i = 0; i < w; i++) {
+                double dcr = ((double) (x0 + i * stride) / width) * spanR + ref.offsetR;
+                if (fractions != null) {
+                    fractions[index] = 0.0f;
+                }
+                steps[index++] = iterate(ref, dcr, dci, maxSteps);
+            }
+        }
+    }
+
+    private static int iterate(Reference ref, double dcr, double dci, int maxSteps) {
+        double[] xr = ref.orbitR;
+        double[] xi = ref.orbitIm;
+        int last = xr.length - 1;
+
+        int n = ref.skipped;
+        int m = n;
+        double dr = 0.0;
+        double di = 0.0;
+        if (n > 0) {
+            double dcr2 = dcr * dcr - dci * dci;
+            double dci2 = 2 * dcr * dci;
+            double dcr3 = dcr2 * dcr - dci2 * dci;
+            double dci3 = dcr2 * dci + dci2 * dcr;
+            dr = ref.ar * dcr - ref.ai * dci + ref.br * dcr2 - ref.bi * dci2 + ref.cr * dcr3 - ref.ci * dci3;
+            di = ref.ar * dci + ref.ai * dcr + ref.br * dci2 + ref.bi * dcr2 + ref.cr * dci3 + ref.ci * dcr3;
+        }
+
+        int checkM = m;
+        double checkR = dr;
+        double checkI = di;
+        int period = 0;
+        int window = 1;
+        while (n < maxSteps) {
+            double r = xr[m];
+            double i = xi[m];
+            double nr = 2 * (r * dr - i * di) + (dr * dr - di * di) + dcr;
+            double ni = 2 * (r * di + i * dr) + 2 * dr * di + dci;
+            dr = nr;
+            di = ni;
+            m++;
+
+            double zr = xr[m] + dr;
+            double zi = xi[m] + di;
+            double magnitude = zr * zr + zi * zi;
+            if (magnitude > 4.0) {
+                return n;
+            }
+            n++;
+            if (m == last || magnitude < dr * dr + di * di) {
+                dr = zr;
+                di = zi;
+                m = 0;
+            }
+            if (m == checkM && dr == checkR && di == checkI) {
+                EscapeTimeKernel.saved(maxSteps - n);
+                return maxSteps;
+            }
+            if (++period == window) {
+                checkM = m;
+                checkR = dr;
+                checkI = di;
+                period = 0;
+                window <<= 1;
+            }
+        }
+        return maxSteps;
+    }
+
+    public int getSkippedIterations() {
+        return reference().skipped;
+    }
+
+    // The reference depends on the view only, not on the size of the image it is sampled into.
+    private Reference reference() {
+        Reference ref = reference;
+        if (ref == null) {
+            synchronized (this) {
+                ref = reference;
+                if (ref == null) {
+                    ref = new Reference();
+                    reference = ref;
+                }
+            }
+        }
+        return ref;
+    }
+
+    @Override
+    public BigDecimal rescaleToNewScale(BigDecimal unscaledValue, BigDecimal oldLowerBound, BigDecimal oldUpperbound,
+                                        BigDecimal newLowerbound, BigDecimal newUpperbound) {
+        return unscaledValue.subtract(oldLowerBound, mc)
+                .divide(oldUpperbound.subtract(oldLowerBound, mc), mc)
+                .multiply(newUpperbound.subtract(newLowerbound, mc), mc)
+                .add(newLowerbound, mc);
+    }
+
+    private class Reference {
+
+        // The limit the orbit was computed for; it is shorter only if the reference escapes earlier.
+        private final int maxSteps;
+
+        // Offset of pixel (0, 0) from the reference point.
+        private final double offsetR;
+
+        private final double offsetIm;
+
+        // Reference orbit X_0 = 0 .. X_last, which ends at the step limit or at the first escaped point.
+        private final double[] orbitR;
+
+        private final double[] orbitIm;
+
+        // Iterations covered by the series approximation and its coefficients A, B, C at that iteration.
+        private final int skipped;
+
+        private double ar, ai, br, bi, cr, ci;
+
+        Reference() {
+            this.maxSteps = getMaxSteps();
+
+            BigDecimal centerR = getMinR().add(getMaxR(), mc).divide(TWO, mc);
+            BigDecimal centerIm = getMinIm().add(getMaxIm(), mc).divide(TWO, mc);
+            offsetR = getMinR().subtract(centerR, mc).doubleValue();
+            offsetIm = getMinIm().subtract(centerIm, mc).doubleValue();
+
+            int maxSteps = getMaxSteps();
+            double[] orbitR = new double[maxSteps + 1];
+            double[] orbitIm = new double[maxSteps + 1];
+            BigComplex c = new BigComplex(centerR, centerIm);
+            BigComplex z = BigComplex.ZERO;
+            int last = 0;
+            while (last < maxSteps) {
+                z = z.squareAdd(c, mc);
+                last++;
+                orbitR[last] = z.getReal().doubleValue();
+                orbitIm[last] = z.getImaginary().doubleValue();
+                if (z.absSquared(mc).compareTo(FOUR) > 0) {
+                    break;
+                }
+            }
+            this.orbitR = Arrays.copyOf(orbitR, last + 1);
+            this.orbitIm = Arrays.copyOf(orbitIm, last + 1);
+            this.skipped = approximateSeries(Math.hypot(offsetR, offsetIm), last);
+        }
+
+        private int approximateSeries(double radius, int last) {
+            double ar = 0, ai = 0, br = 0, bi = 0, cr = 0, ci = 0;
+            int skipped = 0;
+            for (int n = 0; n < last - 1; n++) {
+                double xr = orbitR[n];
+                double xi = orbitIm[n];
+                double nar = 2 * (xr * ar - xi * ai) + 1;
+                double nai = 2 * (xr * ai + xi * ar);
+                double nbr = 2 * (xr * br - xi * bi) + (ar * ar - ai * ai);
+                double nbi = 2 * (xr * bi + xi * br) + 2 * ar * ai;
+                double ncr = 2 * (xr * cr - xi * ci) + 2 * (ar * br - ai * bi);
+                double nci = 2 * (xr * ci + xi * cr) + 2 * (ar * bi + ai * br);
+
+                double a = Math.hypot(nar, nai) * radius;
+                double b = Math.hypot(nbr, nbi) * radius * radius;
+                double cubic = Math.hypot(ncr, nci) * radius * radius * radius;
+                // The approximated offset must stay exact and must not let any pixel of the view escape early.
+                boolean valid = Double.isFinite(cubic) && cubic <= SERIES_TOLERANCE * a
+                        && Math.hypot(orbitR[n + 1], orbitIm[n + 1]) + a + b + cubic < 2.0;
+                if (!valid) {
+                    break;
+                }
+                ar = nar;
+                ai = nai;
+                br = nbr;
+                bi = nbi;
+                cr = ncr;
+                ci = nci;
+                skipped = n + 1;
+            }
+            this.ar = ar;
+            this.ai = ai;
+            this.br = br;
+            this.bi = bi;
+            this.cr = cr;
+            this.ci = ci;
+            return skipped;
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package net.euhaus.n.mandelbrot;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGB PNG one row at a time, so that images of any height can be encoded with memory proportional
+ * to one row. Rows are delta-coded with the PNG "Sub" filter and deflated into fixed-size IDAT chunks.
+ */
+public class PngStreamWriter implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+
+    private final int width;
+
+    private final int height;
+
+    private final Deflater deflater;
+
+    private final DeflaterOutputStream idat;
+
+    private final byte[] row;
+
+    private int rowsWritten;
+
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("image must not be empty: " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        this.idat = new DeflaterOutputStream(new ChunkOutputStream("IDAT"), deflater, CHUNK_SIZE);
+        this.row = new byte[1 + 3 * width];
+
+        this.out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 2; // truecolor
+        writeChunk("IHDR", header, header.length);
+    }
+
+    /**
+     * Appends the next row, taking {@code width} ARGB pixels from {@code argb} starting at {@code offset}. Alpha is
+     * ignored.
+     */
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (rowsWritten == height) {
+            throw new IllegalStateException("all " + height + " rows have been written");
+        }
+        row[0] = FILTER_SUB;
+        int previous = 0;
+        for (int x = 0, i = 1; x < width; x++, i += 3) {
+            int pixel = argb[offset + x];
+            row[i] = (byte) ((pixel >> 16) - (previous >> 16));
+            row[i + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+            row[i + 2] = (byte) (pixel - previous);
+            previous = pixel;
+        }
+        idat.write(row);
+        rowsWritten++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height) {
+                throw new IOException("only " + rowsWritten + " of " + height + " rows have been written");
+            }
+            idat.close();
+            writeChunk("IEND", new byte[0], 0);
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private class ChunkOutputStream extends OutputStream {
+
+        private final String type;
+
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+
+        private int length;
+
+        ChunkOutputStream(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == buffer.length) {
+                flushChunk();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (length > 0) {
+                writeChunk(type, buffer, length);
+                length = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Renders a frame coarse to fine: first every {@value #COARSEST_STRIDE}th pixel in both directions (1/16 of the
+ * samples), then the samples halfway between those, until every pixel is computed. Each pass only computes positions
+ * that no earlier pass had, so the passes together cost exactly one full render and produce the same counts.
+ *
+ * After every pass the frame can be shown with {@link #expand}, which paints each computed sample as a block.
+ */
+public class ProgressiveRenderer {
+
+    public static final int COARSEST_STRIDE = 4;
+
+    private final TileScheduler tileScheduler;
+
+    public ProgressiveRenderer(TileScheduler tileScheduler) {
+        this.tileScheduler = tileScheduler;
+    }
+
+    /**
+     * Fills {@code steps} and, unless it is {@code null}, {@code fractions} pass by pass, calling {@code onPass} with
+     * the stride of the samples complete so far after each pass: {@value #COARSEST_STRIDE}, 2 and finally 1. Stops
+     * without further calls once {@code cancelled} turns true.
+     */
+    public void render(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int width, int height,
+                       BooleanSupplier cancelled, IntConsumer onPass) {
+        int[] samples = new int[((width + 1) / 2) * ((height + 1) / 2)];
+        float[] sampleFractions = fractions == null ? null : new float[samples.length];
+        for (int stride = COARSEST_STRIDE; stride >= 1; stride /= 2) {
+            if (stride == COARSEST_STRIDE) {
+                fill(view, steps, fractions, samples, sampleFractions, 0, 0, stride, width, height, cancelled);
+            } else {
+                // The new positions are those of the finer grid that are off the coarser one.
+                int step = 2 * stride;
+                fill(view, steps, fractions, samples, sampleFractions, stride, 0, step, width, height, cancelled);
+                fill(view, steps, fractions, samples, sampleFractions, 0, stride, step, width, height, cancelled);
+                fill(view, steps, fractions, samples, sampleFractions, stride, stride, step, width, height, cancelled);
+            }
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            onPass.accept(stride);
+        }
+    }
+
+    // Computes the lattice starting at pixel (x0, y0) with the given step and scatters it into the frame.
+    private void fill(Mandelbrot<?, ?> view, int[] steps, float[] fractions, int[] samples, float[] sampleFractions,
+                      int x0, int y0, int step, int width, int height, BooleanSupplier cancelled) {
+        int columns = (width - x0 + step - 1) / step;
+        int rows = (height - y0 + step - 1) / step;
+        if (columns <= 0 || rows <= 0) {
+            return;
+        }
+        tileScheduler.renderSamples(view, samples, sampleFractions, x0, y0, columns, rows, step, width, height,
+                cancelled);
+        for (int j = 0; j < rows; j++) {
+            int index = (y0 + j * step) * width + x0;
+            for (int i = 0; i < columns; i++, index += step) {
+                steps[index] = samples[j * columns + i];
+                if (fractions != null) {
+                    fractions[index] = sampleFractions[j * columns + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a frame whose samples are complete at {@code stride} into {@code expandedSteps} and
+     * {@code expandedFractions} (either may be {@code null} together with its source), giving every pixel the value
+     * of the sample at the top left of its {@code stride x stride} block.
+     */
+    public static void expand(int[] steps, float[] fractions, int width, int height, int stride,
+                              int[] expandedSteps, float[] expandedFractions) {
+        for (int y = 0; y < height; y++) {
+            int row = (y - y % stride) * width;
+            int index = y * width;
+            for (int x = 0; x < width; x++, index++) {
+                int sample = row + x - x % stride;
+                expandedSteps[index] = steps[sample];
+                if (fractions != null) {
+                    expandedFractions[index] = fractions[sample];
+                }
+            }
+        }
+    }
+
+}
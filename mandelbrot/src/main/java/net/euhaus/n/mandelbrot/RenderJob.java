@@ -0,0 +1,140 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * One frame requested from a {@link RenderService}, tagged with the viewport generation it was submitted for.
+ */
+public class RenderJob {
+
+    private final long generation;
+
+    private final Mandelbrot<?, ?> mandelbrot;
+
+    private final int width;
+
+    private final int height;
+
+    private final RenderMode mode;
+
+    private final int[] steps;
+
+    private final float[] fractions;
+
+    private final long submittedNanos = System.nanoTime();
+
+    private volatile boolean cancelled;
+
+    private volatile int maxSteps;
+
+    private volatile int stride = 1;
+
+    private volatile boolean complete;
+
+    private volatile Supersamples supersamples;
+
+    RenderJob(long generation, Mandelbrot<?, ?> mandelbrot, int width, int height, RenderMode mode) {
+        this.generation = generation;
+        this.mandelbrot = mandelbrot;
+        this.width = width;
+        this.height = height;
+        this.mode = mode;
+        this.steps = new int[width * height];
+        this.fractions = new float[width * height];
+        this.maxSteps = mandelbrot.getMaxSteps();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Mandelbrot<?, ?> getMandelbrot() {
+        return mandelbrot;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The mode the frame was submitted with. Only frames of the same mode take pixels over from each other.
+     */
+    public RenderMode getMode() {
+        return mode;
+    }
+
+    public int[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * Differences between the smooth and the integer iteration counts, see
+     * {@link Mandelbrot#fillConvergence(int[], float[], int, int, int, int, int, int, int, int)}. All 0 for frames
+     * served from the tile cache.
+     */
+    public float[] getFractions() {
+        return fractions;
+    }
+
+    /**
+     * The iteration limit the frame was rendered with, which differs from the requested view's when the
+     * {@link RenderService} chooses limits adaptively.
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    void setMaxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Distance between the samples computed so far: above 1 while a {@link ProgressiveRenderer} pass is shown, 1 once
+     * the frame is complete.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    void setStride(int stride) {
+        this.stride = stride;
+    }
+
+    /**
+     * Whether every pixel was computed, so that later frames may take pixels over from this one.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    void setComplete() {
+        this.complete = true;
+    }
+
+    /**
+     * The extra samples of the pixels an {@link AdaptiveSupersampler} refined, or {@code null} while the frame has
+     * one sample per pixel.
+     */
+    public Supersamples getSupersamples() {
+        return supersamples;
+    }
+
+    void setSupersamples(Supersamples supersamples) {
+        this.supersamples = supersamples;
+    }
+
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+}
@@ -0,0 +1,182 @@
+package net.euhaus.n.mandelbrot;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-frame and per-tile render statistics. Everything is recorded per tile or per frame, never per pixel, and
+ * callers skip even that while the metrics are disabled.
+ */
+public class RenderMetrics implements RenderMetricsMBean {
+
+    public static final String OBJECT_NAME = "net.euhaus.n.mandelbrot:type=RenderMetrics";
+
+    private static final int HISTOGRAM_BUCKETS = 24;
+
+    private volatile boolean enabled;
+
+    private final AtomicLongArray tileHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    private volatile long frames;
+
+    private volatile long lastFrameNanos;
+
+    private volatile long lastComputeNanos;
+
+    private volatile long lastPaintNanos;
+
+    private volatile long lastPixels;
+
+    private volatile long lastTotalIterations;
+
+    private volatile long lastMaxedPixels;
+
+    public RenderMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    public void recordTile(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+        tileHistogram.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+    }
+
+    /**
+     * Records the compute stage of a frame and the statistics of its counts.
+     */
+    public void recordCompute(long computeNanos, int[] steps, int length, int maxSteps) {
+        long total = 0;
+        long maxed = 0;
+        for (int i = 0; i < length; i++) {
+            int step = steps[i];
+            total += step;
+            if (step >= maxSteps) {
+                maxed++;
+            }
+        }
+        lastComputeNanos = computeNanos;
+        lastPixels = length;
+        lastTotalIterations = total;
+        lastMaxedPixels = maxed;
+    }
+
+    /**
+     * Records the paint stage and the wall time from the request of a frame until it was on screen.
+     */
+    public void recordPaint(long paintNanos, long frameNanos) {
+        lastPaintNanos = paintNanos;
+        lastFrameNanos = frameNanos;
+        frames++;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public double getLastFrameMillis() {
+        return lastFrameNanos / 1e6;
+    }
+
+    @Override
+    public double getLastComputeMillis() {
+        return lastComputeNanos / 1e6;
+    }
+
+    @Override
+    public double getLastPaintMillis() {
+        return lastPaintNanos / 1e6;
+    }
+
+    @Override
+    public double getLastPixelsPerSecond() {
+        long nanos = lastComputeNanos;
+        return nanos == 0 ? 0 : lastPixels * 1e9 / nanos;
+    }
+
+    @Override
+    public long getLastTotalIterations() {
+        return lastTotalIterations;
+    }
+
+    @Override
+    public double getLastMeanIterations() {
+        long pixels = lastPixels;
+        return pixels == 0 ? 0 : (double) lastTotalIterations / pixels;
+    }
+
+    @Override
+    public double getLastMaxStepsShare() {
+        long pixels = lastPixels;
+        return pixels == 0 ? 0 : (double) lastMaxedPixels / pixels;
+    }
+
+    @Override
+    public long getTiles() {
+        long tiles = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            tiles += tileHistogram.get(i);
+        }
+        return tiles;
+    }
+
+    @Override
+    public long[] getTileTimeHistogram() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = tileHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            tileHistogram.set(i, 0);
+        }
+        frames = 0;
+        lastFrameNanos = lastComputeNanos = lastPaintNanos = 0;
+        lastPixels = lastTotalIterations = lastMaxedPixels = 0;
+    }
+
+    /**
+     * Short multi-line summary for the on-canvas overlay.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "frame %.1f ms (compute %.1f ms, paint %.1f ms)%n"
+                        + "%.2f Mpixel/s, %.1f iterations/pixel, %d total%n"
+                        + "%.1f%% at step limit, %d tiles",
+                getLastFrameMillis(), getLastComputeMillis(), getLastPaintMillis(),
+                getLastPixelsPerSecond() / 1e6, getLastMeanIterations(), getLastTotalIterations(),
+                100 * getLastMaxStepsShare(), getTiles());
+    }
+
+}
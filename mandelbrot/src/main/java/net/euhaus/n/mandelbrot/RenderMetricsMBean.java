@@ -0,0 +1,38 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * JMX view of {@link RenderMetrics}.
+ */
+public interface RenderMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getFrames();
+
+    double getLastFrameMillis();
+
+    double getLastComputeMillis();
+
+    double getLastPaintMillis();
+
+    double getLastPixelsPerSecond();
+
+    long getLastTotalIterations();
+
+    double getLastMeanIterations();
+
+    double getLastMaxStepsShare();
+
+    long getTiles();
+
+    /**
+     * Tile compute times; bucket {@code i} counts tiles that took less than {@code 2^i} microseconds (the last bucket
+     * collects everything slower).
+     */
+    long[] getTileTimeHistogram();
+
+    void reset();
+
+}
@@ -0,0 +1,30 @@
+package net.euhaus.n.mandelbrot;
+
+public enum RenderMode {
+
+    /**
+     * Computes every pixel.
+     */
+    PER_PIXEL,
+
+    /**
+     * Mariani-Silver subdivision: computes the border of a rectangle and fills its interior without iterating if
+     * the whole border has the same count, otherwise splits the rectangle and recurses down to a minimum block size.
+     * Much cheaper on views with large areas inside the set, at the risk of missing features thinner than a block
+     * that do not touch its border.
+     */
+    BOUNDARY_TRACING,
+
+    /**
+     * Samples the view from power-of-two grid tiles kept in a {@link TileCache}, so that areas visited before are
+     * not computed again. Only for {@link MandelbrotIEEE754} views; others are rendered per pixel.
+     */
+    TILE_CACHE,
+
+    /**
+     * Not a view of the iteration counts but the density of the orbits of random escaping points, accumulated by a
+     * {@link BuddhabrotRenderer}. Only for batch rendering; the tile scheduler and the render service reject it.
+     */
+    BUDDHABROT
+
+}
@@ -0,0 +1,224 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Renders frames on background workers. Every submission starts a new viewport generation and cancels the frame
+ * in flight, whose remaining tiles then return without iterating; only the newest generation is ever completed.
+ */
+public class RenderService {
+
+    private final TileScheduler tileScheduler;
+
+    private final TiledRenderer tiledRenderer;
+
+    private final ProgressiveRenderer progressiveRenderer;
+
+    private final IncrementalRenderer incrementalRenderer;
+
+    private final RenderMetrics metrics;
+
+    private final ExecutorService dispatcher;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile RenderJob current;
+
+    private volatile boolean adaptiveIterations;
+
+    private volatile boolean progressive;
+
+    private volatile AdaptiveSupersampler supersampler;
+
+    public RenderService(TileScheduler tileScheduler) {
+        this(tileScheduler, new TileCache());
+    }
+
+    public RenderService(TileScheduler tileScheduler, TileCache tileCache) {
+        this(tileScheduler, tileCache, new RenderMetrics(false));
+    }
+
+    public RenderService(TileScheduler tileScheduler, TileCache tileCache, RenderMetrics metrics) {
+        this.tileScheduler = tileScheduler;
+        this.metrics = metrics;
+        tileScheduler.setMetrics(metrics);
+        this.tiledRenderer = new TiledRenderer(tileScheduler, tileCache);
+        this.progressiveRenderer = new ProgressiveRenderer(tileScheduler);
+        this.incrementalRenderer = new IncrementalRenderer(tileScheduler);
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mandelbrot-render-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts rendering a {@code width x height} view of {@code mandelbrot}. {@code onComplete} is called on a worker
+     * thread once all tiles are computed, unless the job was superseded before that.
+     */
+    public RenderJob submit(Mandelbrot<?, ?> mandelbrot, int width, int height, Consumer<RenderJob> onComplete) {
+        return submit(mandelbrot, width, height, RenderMode.PER_PIXEL, onComplete);
+    }
+
+    public RenderJob submit(Mandelbrot<?, ?> mandelbrot, int width, int height, RenderMode mode,
+                            Consumer<RenderJob> onComplete) {
+        return submit(mandelbrot, width, height, mode, null, onComplete);
+    }
+
+    /**
+     * Like {@link #submit(Mandelbrot, int, int, RenderMode, Consumer)}. While {@link #setProgressive progressive}
+     * rendering is on, {@link RenderMode#PER_PIXEL} frames are computed coarse to fine and {@code onPass}, unless it
+     * is {@code null}, is called on a worker thread after each coarse pass with {@link RenderJob#getStride()} telling
+     * how far the frame has got. While {@link #setSupersampling supersampling} is on, it is also called with stride 1
+     * once every pixel has its first sample, before the boundary is refined.
+     */
+    public RenderJob submit(Mandelbrot<?, ?> mandelbrot, int width, int height, RenderMode mode,
+                            Consumer<RenderJob> onPass, Consumer<RenderJob> onComplete) {
+        return submit(mandelbrot, width, height, mode, null, 0, 0, onPass, onComplete);
+    }
+
+    /**
+     * Like {@link #submit(Mandelbrot, int, int, RenderMode, Consumer, Consumer)} for a view on the same pixel grid as
+     * the complete frame {@code previous}, shifted by {@code (dx, dy)} pixels: pixels in the overlap are taken over
+     * and only the rest is computed, with the iteration limit of {@code previous}. The whole frame is computed
+     * without a {@code previous} frame, in {@link RenderMode#TILE_CACHE}, when {@code previous} was rendered in
+     * another mode, and with {@link #setAdaptiveIterations adaptive iterations} when {@code previous} covers only
+     * part of the view and the limit chosen for it differs.
+     */
+    public synchronized RenderJob submit(Mandelbrot<?, ?> mandelbrot, int width, int height, RenderMode mode,
+                                         RenderJob previous, int dx, int dy,
+                                         Consumer<RenderJob> onPass, Consumer<RenderJob> onComplete) {
+        if (mode == RenderMode.BUDDHABROT) {
+            throw new IllegalArgumentException("render mode not supported by the render service: " + mode);
+        }
+        boolean reusable = previous != null && previous.isComplete() && previous.getMode() == mode
+                && mode != RenderMode.TILE_CACHE;
+        boolean covered = reusable && dx == 0 && dy == 0
+                && width == previous.getWidth() && height == previous.getHeight();
+        boolean adaptive = adaptiveIterations;
+        RenderJob job = new RenderJob(generation.incrementAndGet(), mandelbrot, width, height, mode);
+        RenderJob superseded = current;
+        current = job;
+        if (superseded != null) {
+            superseded.cancel();
+        }
+
+        dispatcher.execute(() -> {
+            if (job.isCancelled()) {
+                return;
+            }
+            long start = System.nanoTime();
+            Mandelbrot<?, ?> view;
+            if (covered || reusable && !adaptive) {
+                view = mandelbrot.withMaxSteps(previous.getMaxSteps());
+            } else {
+                view = adaptive ? IterationLimit.choose(mandelbrot, tileScheduler, job::isCancelled) : mandelbrot;
+                if (job.isCancelled()) {
+                    return;
+                }
+            }
+            // Pixels iterated up to another limit would escape or stay inside differently.
+            boolean reuse = reusable && view.getMaxSteps() == previous.getMaxSteps();
+            job.setMaxSteps(view.getMaxSteps());
+            if (reuse) {
+                incrementalRenderer.render(view, job.getSteps(), job.getFractions(), width, height, previous, dx, dy,
+                        mode, job::isCancelled);
+            } else if (mode == RenderMode.TILE_CACHE && TiledRenderer.supports(view, width, height)) {
+                tiledRenderer.render((MandelbrotIEEE754) view, job.getSteps(), width, height, job::isCancelled);
+            } else if (progressive && mode == RenderMode.PER_PIXEL) {
+                progressiveRenderer.render(view, job.getSteps(), job.getFractions(), width, height, job::isCancelled,
+                        stride -> {
+                            job.setStride(stride);
+                            if (stride > 1 && onPass != null) {
+                                onPass.accept(job);
+                            }
+                        });
+            } else {
+                RenderMode tileMode = mode == RenderMode.TILE_CACHE ? RenderMode.PER_PIXEL : mode;
+                tileScheduler.render(view, job.getSteps(), job.getFractions(), 0, 0, width, height, width, height,
+                        tileMode, job::isCancelled);
+            }
+            AdaptiveSupersampler supersampler = this.supersampler;
+            if (supersampler != null && !job.isCancelled()) {
+                if (onPass != null) {
+                    onPass.accept(job);
+                }
+                job.setSupersamples(supersampler.refine(view, job.getSteps(), job.getFractions(), width, height,
+                        reuse ? previous : null, dx, dy, job::isCancelled));
+            }
+            if (!job.isCancelled()) {
+                if (metrics.isEnabled()) {
+                    metrics.recordCompute(System.nanoTime() - start, job.getSteps(), width * height,
+                            view.getMaxSteps());
+                }
+                job.setComplete();
+                onComplete.accept(job);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Whether frames are rendered with a limit chosen by {@link IterationLimit} instead of the submitted view's own.
+     */
+    public void setAdaptiveIterations(boolean adaptiveIterations) {
+        this.adaptiveIterations = adaptiveIterations;
+    }
+
+    public boolean isAdaptiveIterations() {
+        return adaptiveIterations;
+    }
+
+    /**
+     * Whether per-pixel frames are computed in coarse to fine passes by a {@link ProgressiveRenderer}.
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    /**
+     * Anti-aliases frames by refining boundary pixels with {@code grid x grid} samples, see
+     * {@link AdaptiveSupersampler}; a grid of 1 turns this off.
+     */
+    public void setSupersampling(int grid) {
+        this.supersampler = grid <= 1 ? null : new AdaptiveSupersampler(tileScheduler, grid);
+    }
+
+    public int getSupersampling() {
+        AdaptiveSupersampler supersampler = this.supersampler;
+        return supersampler == null ? 1 : supersampler.getGrid();
+    }
+
+    public boolean isCurrent(RenderJob job) {
+        return job.getGeneration() == generation.get() && !job.isCancelled();
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public TileCache getTileCache() {
+        return tiledRenderer.getTileCache();
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public void shutdown() {
+        RenderJob job = current;
+        if (job != null) {
+            job.cancel();
+        }
+        dispatcher.shutdownNow();
+        tileScheduler.shutdown();
+    }
+
+}
@@ -0,0 +1,73 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.Arrays;
+
+/**
+ * Extra samples of the pixels of a frame that an {@link AdaptiveSupersampler} refined. Pixel {@code pixels[p]} has
+ * the samples {@code offsets[p]} to {@code offsets[p + 1] - 1} of {@code steps} and {@code fractions} besides its
+ * own, 3 or up to {@code grid * grid - 1}; the pixel indices are in ascending order.
+ *
+ * Only counts are kept, so that a {@link Colorizer} averages the colors of the samples under any palette.
+ */
+public final class Supersamples {
+
+    private final int grid;
+
+    private final int[] pixels;
+
+    private final int[] offsets;
+
+    private final int[] steps;
+
+    private final float[] fractions;
+
+    Supersamples(int grid, int[] pixels, int[] offsets, int[] steps, float[] fractions) {
+        this.grid = grid;
+        this.pixels = pixels;
+        this.offsets = offsets;
+        this.steps = steps;
+        this.fractions = fractions;
+    }
+
+    /**
+     * The {@code n} of the at most {@code n x n} samples per refined pixel.
+     */
+    public int getGrid() {
+        return grid;
+    }
+
+    public int size() {
+        return pixels.length;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getSteps() {
+        return steps;
+    }
+
+    public float[] getFractions() {
+        return fractions;
+    }
+
+    /**
+     * Number of extra samples of all refined pixels together.
+     */
+    public int getSampleCount() {
+        return offsets[pixels.length];
+    }
+
+    /**
+     * Position of {@code pixel} in {@link #getPixels()}, or a negative number if it was not refined.
+     */
+    public int indexOf(int pixel) {
+        return Arrays.binarySearch(pixels, pixel);
+    }
+
+}
@@ -0,0 +1,58 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Least-recently-used cache of computed iteration tiles, bounded by the bytes of their count arrays. Counts are
+ * stored as {@code short[]} whenever the step limit allows it.
+ */
+public class TileCache extends ByteBudgetCache<TileKey, TileCache.Tile> {
+
+    public static final long DEFAULT_BYTE_BUDGET = 128L << 20;
+
+    public TileCache() {
+        this(DEFAULT_BYTE_BUDGET);
+    }
+
+    public TileCache(long byteBudget) {
+        super(byteBudget, Tile::getBytes);
+    }
+
+    /**
+     * Square block of iteration counts, row by row.
+     */
+    public static final class Tile {
+
+        private final int size;
+
+        private final short[] shortSteps;
+
+        private final int[] intSteps;
+
+        public Tile(int size, int[] steps, int maxSteps) {
+            this.size = size;
+            if (maxSteps <= Short.MAX_VALUE) {
+                shortSteps = new short[steps.length];
+                for (int i = 0; i < steps.length; i++) {
+                    shortSteps[i] = (short) steps[i];
+                }
+                intSteps = null;
+            } else {
+                shortSteps = null;
+                intSteps = steps.clone();
+            }
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int get(int x, int y) {
+            int index = y * size + x;
+            return shortSteps != null ? shortSteps[index] : intSteps[index];
+        }
+
+        public long getBytes() {
+            return shortSteps != null ? 2L * shortSteps.length : 4L * intSteps.length;
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Fills a tile of escape-time counts for a view onto {@code [minR, minR + spanR] x [minIm, minIm + spanIm]}, see
+ * {@link EscapeTimeKernel#fill}.
+ */
+public interface TileKernel {
+
+    String KERNEL_PROPERTY = "mandelbrot.kernel";
+
+    void fill(int[] steps, float[] fractions, int offset, int scanline,
+              int x0, int y0, int w, int h, int stride, int width, int height,
+              double minR, double spanR, double minIm, double spanIm, int maxSteps);
+
+    static TileKernel scalar() {
+        return EscapeTimeKernel::fill;
+    }
+
+    /**
+     * Returns the {@code jdk.incubator.vector} kernel, or {@code null} if the module is not available at runtime.
+     */
+    static TileKernel vector() {
+        try {
+            return (TileKernel) Class.forName("net.euhaus.n.mandelbrot.VectorEscapeTimeKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * The vector kernel when it is available, unless the system property {@value #KERNEL_PROPERTY} is
+     * {@code scalar}; otherwise the scalar kernel.
+     */
+    static TileKernel preferred() {
+        if (!"scalar".equals(System.getProperty(KERNEL_PROPERTY))) {
+            TileKernel vector = vector();
+            if (vector != null) {
+                return vector;
+            }
+        }
+        return scalar();
+    }
+
+}
@@ -0,0 +1,66 @@
+package net.euhaus.n.mandelbrot;
+
+/**
+ * Identifies a tile of a power-of-two grid, whose tiles halve their side with every {@code level}, rendered with
+ * {@code maxSteps}. Where the grid starts and how large its level 0 tile is belongs to the grid that uses the key, see
+ * {@link TiledRenderer} and {@link TileServer}.
+ */
+public final class TileKey {
+
+    private final int level;
+
+    private final long tileX;
+
+    private final long tileY;
+
+    private final int maxSteps;
+
+    public TileKey(int level, long tileX, long tileY, int maxSteps) {
+        this.level = level;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.maxSteps = maxSteps;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getTileX() {
+        return tileX;
+    }
+
+    public long getTileY() {
+        return tileY;
+    }
+
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TileKey)) {
+            return false;
+        }
+        TileKey other = (TileKey) o;
+        return level == other.level && tileX == other.tileX && tileY == other.tileY && maxSteps == other.maxSteps;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = level;
+        result = 31 * result + Long.hashCode(tileX);
+        result = 31 * result + Long.hashCode(tileY);
+        return 31 * result + maxSteps;
+    }
+
+    @Override
+    public String toString() {
+        return "TileKey[" + level + "/" + tileX + "/" + tileY + ", maxSteps=" + maxSteps + "]";
+    }
+
+}
@@ -0,0 +1,534 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Computes a view in parallel by recursively splitting it into tiles on a work-stealing {@link ForkJoinPool}.
+ *
+ * Tiles inside the set cost {@link Mandelbrot#getMaxSteps()} iterations per pixel while tiles outside cost only a few,
+ * so the view is split far below one region per core and idle workers steal the remaining halves.
+ */
+public class TileScheduler {
+
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    public static final int DEFAULT_MIN_BLOCK_SIZE = 8;
+
+    private final ForkJoinPool pool;
+
+    private final int tileSize;
+
+    private final int minBlockSize;
+
+    private final LongAdder computedPixels = new LongAdder();
+
+    private volatile RenderMetrics metrics;
+
+    public TileScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TILE_SIZE);
+    }
+
+    public TileScheduler(int parallelism, int tileSize) {
+        this(parallelism, tileSize, DEFAULT_MIN_BLOCK_SIZE);
+    }
+
+    public TileScheduler(int parallelism, int tileSize, int minBlockSize) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("tile size must be positive: " + tileSize);
+        }
+        if (minBlockSize < 3) {
+            throw new IllegalArgumentException("minimum block size must be at least 3: " + minBlockSize);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.tileSize = tileSize;
+        this.minBlockSize = minBlockSize;
+    }
+
+    public int[] render(Mandelbrot<?, ?> mandelbrot, int width, int height) {
+        int[] steps = new int[width * height];
+        render(mandelbrot, steps, width, height);
+        return steps;
+    }
+
+    public void render(Mandelbrot<?, ?> mandelbrot, int[] steps, int width, int height) {
+        render(mandelbrot, steps, 0, 0, width, height, width, height);
+    }
+
+    /**
+     * Computes the region {@code [x0, x0 + w) x [y0, y0 + h)} of a {@code width x height} view into {@code steps},
+     * which is laid out as rows of {@code w} pixels.
+     */
+    public void render(Mandelbrot<?, ?> mandelbrot, int[] steps, int x0, int y0, int w, int h, int width, int height) {
+        render(mandelbrot, steps, x0, y0, w, h, width, height, () -> false);
+    }
+
+    /**
+     * Like {@link #render(Mandelbrot, int[], int, int, int, int, int, int)}, but tiles that start after
+     * {@code cancelled} turned true are skipped, leaving their part of {@code steps} untouched.
+     */
+    public void render(Mandelbrot<?, ?> mandelbrot, int[] steps, int x0, int y0, int w, int h, int width, int height,
+                       BooleanSupplier cancelled) {
+        render(mandelbrot, steps, x0, y0, w, h, width, height, RenderMode.PER_PIXEL, cancelled);
+    }
+
+    public void render(Mandelbrot<?, ?> mandelbrot, int[] steps, int x0, int y0, int w, int h, int width, int height,
+                       RenderMode mode, BooleanSupplier cancelled) {
+        render(mandelbrot, steps, null, x0, y0, w, h, width, height, mode, cancelled);
+    }
+
+    /**
+     * Also fills {@code fractions}, laid out like {@code steps}, with the smooth fractions of the escaped pixels
+     * unless it is {@code null}. {@link RenderMode#BOUNDARY_TRACING} then only fills uniform regions that are
+     * inside the set, since escaped pixels with equal counts still differ in their fractions.
+     */
+    public void render(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions,
+                       int x0, int y0, int w, int h, int width, int height,
+                       RenderMode mode, BooleanSupplier cancelled) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        switch (mode) {
+            case PER_PIXEL:
+                pool.invoke(new TileTask(mandelbrot, steps, fractions, 0, 0, 1, x0, y0, w, x0, y0, w, h, width, height,
+                        cancelled));
+                break;
+            case BOUNDARY_TRACING:
+                pool.invoke(new BoundaryTask(new Frame(mandelbrot, steps, fractions, x0, y0, w, width, height,
+                        cancelled), x0, y0, w, h, true));
+                break;
+            default:
+                throw new IllegalArgumentException("render mode not supported by the tile scheduler: " + mode);
+        }
+    }
+
+    /**
+     * Computes {@code w x h} samples taken every {@code stride} pixels from pixel {@code (x0, y0)} of a
+     * {@code width x height} view, see {@link Mandelbrot#fillSamples}, into {@code steps} and, unless it is
+     * {@code null}, {@code fractions}, both laid out as rows of {@code w} samples.
+     */
+    public void renderSamples(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions,
+                              int x0, int y0, int w, int h, int stride, int width, int height,
+                              BooleanSupplier cancelled) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        pool.invoke(new TileTask(mandelbrot, steps, fractions, x0, y0, stride, 0, 0, w, 0, 0, w, h, width, height,
+                cancelled));
+    }
+
+    /**
+     * Computes the samples at the scattered pixels {@code (xs[i], ys[i])}, {@code i < count}, of a
+     * {@code width x height} view into {@code steps[i]} and {@code fractions[i]}.
+     */
+    public void renderPoints(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int[] xs, int[] ys,
+                             int count, int width, int height, BooleanSupplier cancelled) {
+        if (count > 0) {
+            pool.invoke(new PointTask(mandelbrot, steps, fractions, xs, ys, 0, count, width, height, cancelled));
+        }
+    }
+
+    /**
+     * Computes the runs of {@code lengths[i]} pixels from {@code (xs[i], ys[i])} to the right, {@code i < count}, of
+     * a {@code width x height} view in place into {@code steps} and {@code fractions}, which hold the whole view.
+     * Cheaper per pixel than {@link #renderPoints} where the runs are long enough for the kernel to fill its lanes.
+     */
+    public void renderRuns(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int[] xs, int[] ys,
+                           int[] lengths, int count, int width, int height, BooleanSupplier cancelled) {
+        if (count > 0) {
+            pool.invoke(new RunTask(mandelbrot, steps, fractions, xs, ys, lengths, 0, count, width, height,
+                    cancelled));
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Records the compute time of every tile into {@code metrics} while they are enabled; {@code null} turns tile
+     * timing off entirely.
+     */
+    public void setMetrics(RenderMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getMinBlockSize() {
+        return minBlockSize;
+    }
+
+    /**
+     * Number of pixels that were actually iterated, as opposed to filled in by {@link RenderMode#BOUNDARY_TRACING},
+     * since this scheduler was created.
+     */
+    public long getComputedPixels() {
+        return computedPixels.sum();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void fill(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int offset, int scanline,
+                      int x, int y, int w, int h, int stride, int width, int height) {
+        RenderMetrics metrics = this.metrics;
+        long start = metrics != null && metrics.isEnabled() ? System.nanoTime() : 0;
+        mandelbrot.fillSamples(steps, fractions, offset, scanline, x, y, w, h, stride, width, height);
+        if (start != 0) {
+            metrics.recordTile(System.nanoTime() - start);
+        }
+        computedPixels.add((long) w * h);
+    }
+
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Mandelbrot<?, ?> mandelbrot;
+
+        private final int[] steps;
+
+        private final float[] fractions;
+
+        // Pixel of sample (0, 0) and the distance between samples; coordinates below count samples.
+        private final int latticeX;
+
+        private final int latticeY;
+
+        private final int stride;
+
+        private final int originX;
+
+        private final int originY;
+
+        private final int scanline;
+
+        private final int x;
+
+        private final int y;
+
+        private final int w;
+
+        private final int h;
+
+        private final int width;
+
+        private final int height;
+
+        private final BooleanSupplier cancelled;
+
+        TileTask(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int latticeX, int latticeY, int stride,
+                 int originX, int originY, int scanline, int x, int y, int w, int h, int width, int height,
+                 BooleanSupplier cancelled) {
+            this.mandelbrot = mandelbrot;
+            this.steps = steps;
+            this.fractions = fractions;
+            this.latticeX = latticeX;
+            this.latticeY = latticeY;
+            this.stride = stride;
+            this.originX = originX;
+            this.originY = originY;
+            this.scanline = scanline;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.width = width;
+            this.height = height;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            if (w <= tileSize && h <= tileSize) {
+                int offset = (y - originY) * scanline + (x - originX);
+                fill(mandelbrot, steps, fractions, offset, scanline, latticeX + x * stride, latticeY + y * stride, w, h,
+                        stride, width, height);
+            } else if (w >= h) {
+                int split = splitPoint(w);
+                invokeAll(subTask(x, y, split, h), subTask(x + split, y, w - split, h));
+            } else {
+                int split = splitPoint(h);
+                invokeAll(subTask(x, y, w, split), subTask(x, y + split, w, h - split));
+            }
+        }
+
+        // Halves along tile boundaries so that leaves are full tiles wherever possible.
+        private int splitPoint(int length) {
+            int tiles = (length + tileSize - 1) / tileSize;
+            return Math.max(1, tiles / 2) * tileSize;
+        }
+
+        private TileTask subTask(int x, int y, int w, int h) {
+            return new TileTask(mandelbrot, steps, fractions, latticeX, latticeY, stride, originX, originY, scanline,
+                    x, y, w, h, width, height, cancelled);
+        }
+    }
+
+    private class PointTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Mandelbrot<?, ?> mandelbrot;
+
+        private final int[] steps;
+
+        private final float[] fractions;
+
+        private final int[] xs;
+
+        private final int[] ys;
+
+        private final int from;
+
+        private final int to;
+
+        private final int width;
+
+        private final int height;
+
+        private final BooleanSupplier cancelled;
+
+        PointTask(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int[] xs, int[] ys, int from, int to,
+                  int width, int height, BooleanSupplier cancelled) {
+            this.mandelbrot = mandelbrot;
+            this.steps = steps;
+            this.fractions = fractions;
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.height = height;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            // Scattered points are mostly near the boundary and expensive, so a leaf takes a tile row of them.
+            if (to - from <= tileSize) {
+                for (int i = from; i < to; i++) {
+                    mandelbrot.fillSamples(steps, fractions, i, 1, xs[i], ys[i], 1, 1, 1, width, height);
+                }
+                computedPixels.add(to - from);
+            } else {
+                int split = (from + to) >>> 1;
+                invokeAll(new PointTask(mandelbrot, steps, fractions, xs, ys, from, split, width, height, cancelled),
+                        new PointTask(mandelbrot, steps, fractions, xs, ys, split, to, width, height, cancelled));
+            }
+        }
+    }
+
+    private class RunTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Mandelbrot<?, ?> mandelbrot;
+
+        private final int[] steps;
+
+        private final float[] fractions;
+
+        private final int[] xs;
+
+        private final int[] ys;
+
+        private final int[] lengths;
+
+        private final int from;
+
+        private final int to;
+
+        private final int width;
+
+        private final int height;
+
+        private final BooleanSupplier cancelled;
+
+        RunTask(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int[] xs, int[] ys, int[] lengths,
+                int from, int to, int width, int height, BooleanSupplier cancelled) {
+            this.mandelbrot = mandelbrot;
+            this.steps = steps;
+            this.fractions = fractions;
+            this.xs = xs;
+            this.ys = ys;
+            this.lengths = lengths;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.height = height;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            long pixels = 0;
+            for (int i = from; i < to; i++) {
+                pixels += lengths[i];
+            }
+            // Like a tile, a leaf takes about tileSize^2 pixels.
+            if (to - from == 1 || pixels <= (long) tileSize * tileSize) {
+                for (int i = from; i < to; i++) {
+                    mandelbrot.fillSamples(steps, fractions, ys[i] * width + xs[i], width, xs[i], ys[i], lengths[i], 1,
+                            1, width, height);
+                }
+                computedPixels.add(pixels);
+            } else {
+                int split = (from + to) >>> 1;
+                invokeAll(new RunTask(mandelbrot, steps, fractions, xs, ys, lengths, from, split, width, height,
+                                cancelled),
+                        new RunTask(mandelbrot, steps, fractions, xs, ys, lengths, split, to, width, height,
+                                cancelled));
+            }
+        }
+    }
+
+    private class Frame {
+
+        private final Mandelbrot<?, ?> mandelbrot;
+
+        private final int[] steps;
+
+        private final float[] fractions;
+
+        private final int originX;
+
+        private final int originY;
+
+        private final int scanline;
+
+        private final int width;
+
+        private final int height;
+
+        private final BooleanSupplier cancelled;
+
+        Frame(Mandelbrot<?, ?> mandelbrot, int[] steps, float[] fractions, int originX, int originY, int scanline,
+              int width, int height, BooleanSupplier cancelled) {
+            this.mandelbrot = mandelbrot;
+            this.steps = steps;
+            this.fractions = fractions;
+            this.originX = originX;
+            this.originY = originY;
+            this.scanline = scanline;
+            this.width = width;
+            this.height = height;
+            this.cancelled = cancelled;
+        }
+
+        int index(int x, int y) {
+            return (y - originY) * scanline + (x - originX);
+        }
+
+        void compute(int x, int y, int w, int h) {
+            if (w > 0 && h > 0) {
+                fill(mandelbrot, steps, fractions, index(x, y), scanline, x, y, w, h, 1, width, height);
+            }
+        }
+    }
+
+    private class BoundaryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Frame frame;
+
+        private final int x;
+
+        private final int y;
+
+        private final int w;
+
+        private final int h;
+
+        private final boolean computeBorder;
+
+        BoundaryTask(Frame frame, int x, int y, int w, int h, boolean computeBorder) {
+            this.frame = frame;
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.computeBorder = computeBorder;
+        }
+
+        @Override
+        protected void compute() {
+            if (frame.cancelled.getAsBoolean()) {
+                return;
+            }
+            if (computeBorder) {
+                frame.compute(x, y, w, 1);
+                frame.compute(x, y + h - 1, w, Math.min(1, h - 1));
+                frame.compute(x, y + 1, 1, h - 2);
+                frame.compute(x + w - 1, y + 1, Math.min(1, w - 1), h - 2);
+            }
+            if (w <= 2 || h <= 2) {
+                return;
+            }
+
+            int border = uniformBorder();
+            if (border >= 0 && (frame.fractions == null || border == frame.mandelbrot.getMaxSteps())) {
+                int[] steps = frame.steps;
+                for (int row = y + 1; row < y + h - 1; row++) {
+                    int index = frame.index(x + 1, row);
+                    Arrays.fill(steps, index, index + w - 2, border);
+                    if (frame.fractions != null) {
+                        Arrays.fill(frame.fractions, index, index + w - 2, 0.0f);
+                    }
+                }
+            } else if (w <= minBlockSize && h <= minBlockSize) {
+                frame.compute(x + 1, y + 1, w - 2, h - 2);
+            } else if (w >= h) {
+                int split = x + w / 2;
+                frame.compute(split, y + 1, 1, h - 2);
+                invokeAll(new BoundaryTask(frame, x, y, split - x + 1, h, false),
+                        new BoundaryTask(frame, split, y, x + w - split, h, false));
+            } else {
+                int split = y + h / 2;
+                frame.compute(x + 1, split, w - 2, 1);
+                invokeAll(new BoundaryTask(frame, x, y, w, split - y + 1, false),
+                        new BoundaryTask(frame, x, split, w, y + h - split, false));
+            }
+        }
+
+        // The common count of all border pixels, or -1 if they differ.
+        private int uniformBorder() {
+            int[] steps = frame.steps;
+            int value = steps[frame.index(x, y)];
+            int top = frame.index(x, y);
+            int bottom = frame.index(x, y + h - 1);
+            for (int i = 0; i < w; i++) {
+                if (steps[top + i] != value || steps[bottom + i] != value) {
+                    return -1;
+                }
+            }
+            for (int row = y + 1; row < y + h - 1; row++) {
+                if (steps[frame.index(x, row)] != value || steps[frame.index(x + w - 1, row)] != value) {
+                    return -1;
+                }
+            }
+            return value;
+        }
+    }
+
+}
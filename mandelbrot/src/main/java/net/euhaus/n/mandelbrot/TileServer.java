@@ -0,0 +1,358 @@
+package net.euhaus.n.mandelbrot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the set as XYZ map tiles ({@code /z/x/y.png}, 256 pixels each) on the JDK {@link HttpServer}.
+ *
+ * Zoom 0 is one tile covering {@code [-2.5, 1.5] x [-2, 2]}; every zoom level halves the tile side. Bounds are exact
+ * decimals, so deep levels get the engine {@link Viewport#createMandelbrot(int)} picks for them. Concurrent requests
+ * for the same tile share one computation, and encoded tiles are kept in a byte-bounded LRU cache. {@code /stats}
+ * reports hit rates and latency percentiles.
+ *
+ * Requests run on virtual threads where the runtime has them (Java 21 and later) and on a bounded platform thread
+ * pool otherwise; either way they only wait while the tiles are computed on the shared {@link TileScheduler}.
+ */
+public class TileServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    public static final int TILE_SIZE = 256;
+
+    // Deepest zoom whose tile indices still fit the long coordinates of a TileKey.
+    public static final int MAX_ZOOM = 62;
+
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: TileServer [options]",
+            "  --port <n>                   HTTP port (default " + DEFAULT_PORT + ")",
+            "  --max-steps <n|auto>         iteration limit, auto derives it from the zoom level (default auto)",
+            "  --parallelism <n>            compute threads (default: all cores)",
+            "  --cache-mb <n>               memory for encoded tiles (default " + (DEFAULT_CACHE_BYTES >> 20) + ")");
+
+    private static final Pattern TILE_PATH = Pattern.compile("/(\\d{1,2})/(\\d{1,19})/(\\d{1,19})\\.png");
+
+    private static final BigDecimal WORLD_MIN_R = BigDecimal.valueOf(-2.5);
+
+    private static final BigDecimal WORLD_MIN_IM = BigDecimal.valueOf(-2);
+
+    private static final BigDecimal WORLD_SIDE = BigDecimal.valueOf(4);
+
+    private static final int PLATFORM_THREADS = 256;
+
+    private static final int LATENCY_WINDOW = 1 << 14;
+
+    // Tiles computed at once. Every tile already forks across the whole pool, so admitting only a couple lets each
+    // finish at full speed instead of all requests sharing the cores and finishing together, which keeps the latency
+    // tail short under load. The second slot keeps the pool busy while the first tile's last subtiles drain.
+    private static final int COMPUTE_SLOTS = 2;
+
+    private final TileScheduler tileScheduler;
+
+    private final int maxSteps;
+
+    private final ByteBudgetCache<TileKey, byte[]> cache;
+
+    // Admits tiles to the scheduler in arrival order, see COMPUTE_SLOTS.
+    private final Semaphore computeSlots = new Semaphore(COMPUTE_SLOTS, true);
+
+    private final Map<TileKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder computed = new LongAdder();
+
+    // Latencies of the most recent requests in nanoseconds, a ring buffer guarded by itself.
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    private long latencyCount;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * {@code maxSteps} of 0 derives the limit from the zoom level with {@link IterationLimit#forSpan(double)}, which
+     * keeps adjacent tiles of a level consistent.
+     */
+    public TileServer(TileScheduler tileScheduler, int maxSteps, long cacheBytes) {
+        this.tileScheduler = tileScheduler;
+        this.maxSteps = maxSteps;
+        this.cache = new ByteBudgetCache<>(cacheBytes, png -> png.length);
+    }
+
+    public static void main(String[] args) {
+        try {
+            Map<String, String> options = MandelbrotCli.parse(args);
+            String maxSteps = options.getOrDefault("max-steps", "auto");
+            TileScheduler tileScheduler = new TileScheduler(MandelbrotCli.intOption(options, "parallelism",
+                    Runtime.getRuntime().availableProcessors()), TileScheduler.DEFAULT_TILE_SIZE);
+            TileServer tileServer = new TileServer(tileScheduler,
+                    "auto".equals(maxSteps) ? 0 : MandelbrotCli.intOption(options, "max-steps", 0),
+                    (long) MandelbrotCli.intOption(options, "cache-mb", (int) (DEFAULT_CACHE_BYTES >> 20)) << 20);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                tileServer.stop();
+                tileScheduler.shutdown();
+            }));
+            tileServer.start(MandelbrotCli.intOption(options, "port", DEFAULT_PORT));
+            System.err.println("serving http://localhost:" + tileServer.getPort() + "/{z}/{x}/{y}.png on "
+                    + (tileServer.isVirtual() ? "virtual threads" : PLATFORM_THREADS + " platform threads"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("starting the tile server failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public synchronized void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Stops serving. The tile scheduler belongs to the caller and keeps running.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public synchronized int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public synchronized boolean isVirtual() {
+        return !(executor instanceof ThreadPoolExecutor);
+    }
+
+    // Virtual threads are final from Java 21 on; older runtimes fall back to platform threads.
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(PLATFORM_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "mandelbrot-tile-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "only GET is supported\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if ("/stats".equals(path)) {
+                respond(exchange, 200, "text/plain", stats().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Matcher matcher = TILE_PATH.matcher(path);
+            TileKey key = matcher.matches() ? key(matcher) : null;
+            if (key == null) {
+                respond(exchange, 404, "text/plain", "no such tile\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] png = tile(key);
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=86400");
+            respond(exchange, 200, "image/png", png);
+            record(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "text/plain", (e + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private TileKey key(Matcher matcher) {
+        int zoom = Integer.parseInt(matcher.group(1));
+        if (zoom > MAX_ZOOM) {
+            return null;
+        }
+        long x;
+        long y;
+        try {
+            x = Long.parseLong(matcher.group(2));
+            y = Long.parseLong(matcher.group(3));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        long tiles = 1L << zoom;
+        if (x >= tiles || y >= tiles) {
+            return null;
+        }
+        return new TileKey(zoom, x, y, maxSteps > 0 ? maxSteps : IterationLimit.forSpan(Math.scalb(4.0, -zoom)));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * The encoded tile, from the cache, from a computation already in flight, or computed now.
+     */
+    byte[] tile(TileKey key) {
+        requests.increment();
+        byte[] png = cache.get(key);
+        if (png != null) {
+            hits.increment();
+            return png;
+        }
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> future = inFlight.putIfAbsent(key, created);
+        if (future != null) {
+            coalesced.increment();
+            return join(future);
+        }
+        try {
+            // Another request may have finished the tile between the cache lookup and the registration.
+            png = cache.peek(key);
+            if (png == null) {
+                png = render(key);
+                computed.increment();
+                cache.put(key, png);
+            }
+            created.complete(png);
+            return png;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a tile", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("tile computation failed", e.getCause());
+        }
+    }
+
+    // Tile (x, y) of zoom z starts at (WORLD_MIN_R + x * side, WORLD_MIN_IM + y * side) with side WORLD_SIDE / 2^z.
+    private byte[] render(TileKey key) {
+        BigDecimal side = WORLD_SIDE.divide(BigDecimal.valueOf(2).pow(key.getLevel()));
+        BigDecimal minR = WORLD_MIN_R.add(side.multiply(BigDecimal.valueOf(key.getTileX())));
+        BigDecimal minIm = WORLD_MIN_IM.add(side.multiply(BigDecimal.valueOf(key.getTileY())));
+        Viewport viewport = new Viewport(minR, minR.add(side), minIm, minIm.add(side));
+        int[] steps;
+        computeSlots.acquireUninterruptibly();
+        try {
+            steps = tileScheduler.render(viewport.createMandelbrot(key.getMaxSteps()), TILE_SIZE, TILE_SIZE);
+        } finally {
+            computeSlots.release();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 << 10);
+        try (PngStreamWriter png = new PngStreamWriter(out, TILE_SIZE, TILE_SIZE)) {
+            int[] argb = new int[TILE_SIZE];
+            for (int row = 0; row < TILE_SIZE; row++) {
+                Palette.INFERNO.toArgb(steps, row * TILE_SIZE, argb, 0, TILE_SIZE);
+                png.writeRow(argb, 0);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("encoding a tile in memory failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    private void record(long nanos) {
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = nanos;
+        }
+    }
+
+    /**
+     * Latency percentile in milliseconds over the most recent tile requests, or {@code NaN} before the first one.
+     */
+    public double getLatencyPercentile(double percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW));
+        }
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getComputed() {
+        return computed.sum();
+    }
+
+    public String stats() {
+        long requests = getRequests();
+        return String.format(Locale.ROOT,
+                "requests %d%ncache hits %d (%.1f%%)%ncoalesced %d (%.1f%%)%ncomputed %d%n"
+                        + "cached tiles %d, %.1f MiB%nlatency ms p50 %.1f p90 %.1f p99 %.1f max %.1f%n",
+                requests, getCacheHits(), percent(getCacheHits(), requests),
+                getCoalesced(), percent(getCoalesced(), requests), getComputed(),
+                cache.getSize(), cache.getBytes() / (double) (1 << 20),
+                getLatencyPercentile(50), getLatencyPercentile(90), getLatencyPercentile(99),
+                getLatencyPercentile(100));
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0.0 : 100.0 * part / total;
+    }
+
+}
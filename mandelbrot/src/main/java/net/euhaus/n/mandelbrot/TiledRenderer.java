@@ -0,0 +1,120 @@
+package net.euhaus.n.mandelbrot;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders {@link MandelbrotIEEE754} views from tiles of a power-of-two grid in the complex plane, which are kept in
+ * a {@link TileCache}. A view samples the finest level whose grid is at least as dense as its pixels, so revisiting
+ * an area at a similar zoom only resamples cached tiles.
+ *
+ * At {@code level} the plane is cut into squares of side {@code BASE_SPAN / 2^level}, and the tile of a
+ * {@link TileKey} {@code (tileX, tileY)} starts at {@code (tileX * side, tileY * side)}.
+ */
+public class TiledRenderer {
+
+    public static final int TILE_SIZE = 256;
+
+    // Side of a level 0 tile.
+    public static final double BASE_SPAN = 4.0;
+
+    // Deepest level at which adjacent grid points are still distinct doubles in the interesting region.
+    public static final int MAX_LEVEL = 40;
+
+    private final TileScheduler tileScheduler;
+
+    private final TileCache tileCache;
+
+    public TiledRenderer(TileScheduler tileScheduler, TileCache tileCache) {
+        this.tileScheduler = tileScheduler;
+        this.tileCache = tileCache;
+    }
+
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    public static boolean supports(Mandelbrot<?, ?> mandelbrot, int width, int height) {
+        if (!(mandelbrot instanceof MandelbrotIEEE754) || width <= 0 || height <= 0) {
+            return false;
+        }
+        MandelbrotIEEE754 view = (MandelbrotIEEE754) mandelbrot;
+        return levelFor(view, width, height) <= MAX_LEVEL;
+    }
+
+    private static int levelFor(MandelbrotIEEE754 view, int width, int height) {
+        double spacing = Math.min(Math.abs(view.getMaxR() - view.getMinR()) / width,
+                Math.abs(view.getMaxIm() - view.getMinIm()) / height);
+        return (int) Math.ceil(Math.log(BASE_SPAN / (TILE_SIZE * spacing)) / Math.log(2));
+    }
+
+    /**
+     * Fills {@code steps} with the nearest grid sample of every pixel. Tiles that are interrupted by
+     * {@code cancelled} are not cached.
+     */
+    public void render(MandelbrotIEEE754 view, int[] steps, int width, int height, BooleanSupplier cancelled) {
+        int level = levelFor(view, width, height);
+        double side = Math.scalb(BASE_SPAN, -level);
+        double spacing = side / TILE_SIZE;
+
+        double minR = view.getMinR();
+        double spanR = view.getMaxR() - minR;
+        double minIm = view.getMinIm();
+        double spanIm = view.getMaxIm() - minIm;
+
+        long[] columns = new long[width];
+        for (int x = 0; x < width; x++) {
+            columns[x] = (long) Math.floor((((double) x / width) * spanR + minR) / spacing + 0.5);
+        }
+
+        Map<TileKey, TileCache.Tile> tiles = new HashMap<>();
+        int[] buffer = new int[TILE_SIZE * TILE_SIZE];
+        for (int y = 0; y < height; y++) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            long row = (long) Math.floor((((double) y / height) * spanIm + minIm) / spacing + 0.5);
+            long tileY = Math.floorDiv(row, TILE_SIZE);
+            int tileRow = Math.floorMod(row, TILE_SIZE);
+            int index = y * width;
+            TileCache.Tile tile = null;
+            long tileX = Long.MIN_VALUE;
+            for (int x = 0; x < width; x++) {
+                long column = columns[x];
+                if (tile == null || Math.floorDiv(column, TILE_SIZE) != tileX) {
+                    tileX = Math.floorDiv(column, TILE_SIZE);
+                    TileKey key = new TileKey(level, tileX, tileY, view.getMaxSteps());
+                    tile = tiles.get(key);
+                    if (tile == null) {
+                        tile = tile(key, side, buffer, cancelled);
+                        if (tile == null) {
+                            return;
+                        }
+                        tiles.put(key, tile);
+                    }
+                }
+                steps[index + x] = tile.get(Math.floorMod(column, TILE_SIZE), tileRow);
+            }
+        }
+    }
+
+    private TileCache.Tile tile(TileKey key, double side, int[] buffer, BooleanSupplier cancelled) {
+        TileCache.Tile tile = tileCache.get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        double minR = key.getTileX() * side;
+        double minIm = key.getTileY() * side;
+        MandelbrotIEEE754 grid = new MandelbrotIEEE754(minR, minR + side, minIm, minIm + side, key.getMaxSteps());
+        tileScheduler.render(grid, buffer, 0, 0, TILE_SIZE, TILE_SIZE, TILE_SIZE, TILE_SIZE, cancelled);
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        tile = new TileCache.Tile(TILE_SIZE, buffer, key.getMaxSteps());
+        tileCache.put(key, tile);
+        return tile;
+    }
+
+}
@@ -0,0 +1,160 @@
+package net.euhaus.n.mandelbrot;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Escape-time kernel that iterates one lane group of adjacent pixels per {@link DoubleVector}. Escaped lanes are
+ * masked out and the group exits once every lane has escaped. Lanes use the same operations and interior shortcuts as
+ * {@link EscapeTimeKernel}, so the counts are identical.
+ *
+ * Only loaded through {@link TileKernel#vector()}, which falls back when {@code jdk.incubator.vector} is missing.
+ */
+final class VectorEscapeTimeKernel implements TileKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final double LOWER_ESCAPE_BOUND = 4.0 * (1.0 - 1e-9);
+
+    private static final double UPPER_ESCAPE_BOUND = 4.0 * (1.0 + 1e-9);
+
+    @Override
+    public void fill(int[] steps, float[] fractions, int offset, int scanline,
+                     int x0, int y0, int w, int h, int stride, int width, int height,
+                     double minR, double spanR, double minIm, double spanIm, int maxSteps) {
+        int lanes = SPECIES.length();
+        double[] cr = new double[lanes];
+        int[] result = new int[lanes];
+        double[] checkR = new double[lanes];
+        double[] checkI = new double[lanes];
+        for (int j = 0; j < h; j++) {
+            double ci = ((double) (y0 + j * stride) / height) * spanIm + minIm;
+            DoubleVector civ = DoubleVector.broadcast(SPECIES, ci);
+            int index = offset + j * scanline;
+            int i = 0;
+            for (; i + lanes <= w; i += lanes) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    cr[lane] = ((double) (x0 + (i + lane) * stride) / width) * spanR + minR;
+                }
+                if (fractions != null) {
+                    Arrays.fill(fractions, index, index + lanes, 0.0f);
+                }
+                iterate(cr, civ, maxSteps, result, checkR, checkI, fractions, index);
+                System.arraycopy(result, 0, steps, index, lanes);
+                index += lanes;
+            }
+            for (; i < w; i++) {
+                if (fractions != null) {
+                    fractions[index] = 0.0f;
+                }
+                steps[index] = EscapeTimeKernel.iterate(0.0, 0.0, ((double) (x0 + i * stride) / width) * spanR + minR,
+                        ci, 0, maxSteps, fractions, index);
+                index++;
+            }
+        }
+    }
+
+    private static void iterate(double[] crs, DoubleVector ci, int maxSteps, int[] result,
+                                double[] checkR, double[] checkI, float[] fractions, int index) {
+        int lanes = SPECIES.length();
+        long active = SPECIES.maskAll(true).toLong();
+        double cis = ci.lane(0);
+        for (int lane = 0; lane < lanes; lane++) {
+            if (maxSteps > 0 && EscapeTimeKernel.isInCardioidOrBulb(crs[lane], cis)) {
+                result[lane] = maxSteps;
+                active &= ~(1L << lane);
+                EscapeTimeKernel.saved(maxSteps);
+            }
+        }
+        if (active == 0) {
+            return;
+        }
+
+        VectorMask<Double> activeMask = VectorMask.fromLong(SPECIES, active);
+        DoubleVector cr = DoubleVector.fromArray(SPECIES, crs, 0);
+        DoubleVector zr = DoubleVector.zero(SPECIES);
+        DoubleVector zi = DoubleVector.zero(SPECIES);
+        Arrays.fill(checkR, 0.0);
+        Arrays.fill(checkI, 0.0);
+        int period = 0;
+        int window = 1;
+        for (int step = 0; step < maxSteps; step++) {
+            DoubleVector zrzr = zr.mul(zr);
+            DoubleVector zizi = zi.mul(zi);
+            zi = zr.mul(zi).add(zi.mul(zr)).add(ci);
+            zr = zrzr.sub(zizi).add(cr);
+
+            VectorMask<Double> cycled = zr.compare(VectorOperators.EQ, DoubleVector.fromArray(SPECIES, checkR, 0))
+                    .and(zi.compare(VectorOperators.EQ, DoubleVector.fromArray(SPECIES, checkI, 0)))
+                    .and(activeMask);
+            long periodic = cycled.anyTrue() ? cycled.toLong() : 0;
+            if (++period == window) {
+                zr.intoArray(checkR, 0);
+                zi.intoArray(checkI, 0);
+                period = 0;
+                window <<= 1;
+            }
+
+            DoubleVector magnitude = zr.mul(zr).add(zi.mul(zi));
+            VectorMask<Double> candidates = magnitude.compare(VectorOperators.GE, LOWER_ESCAPE_BOUND).and(activeMask);
+            if (!candidates.anyTrue()) {
+                if (periodic != 0) {
+                    active = retirePeriodic(periodic, active, step, maxSteps, result);
+                    if (active == 0) {
+                        return;
+                    }
+                    activeMask = VectorMask.fromLong(SPECIES, active);
+                }
+                continue;
+            }
+            long escaped = magnitude.compare(VectorOperators.GT, UPPER_ESCAPE_BOUND).toLong() & active;
+            VectorMask<Double> borderline = candidates.and(magnitude.compare(VectorOperators.LE, UPPER_ESCAPE_BOUND));
+            long undecided = borderline.toLong() & active;
+            for (int lane = 0; undecided != 0; lane++, undecided >>>= 1) {
+                if ((undecided & 1) != 0 && EscapeTimeKernel.escaped(zr.lane(lane), zi.lane(lane))) {
+                    escaped |= 1L << lane;
+                }
+            }
+
+            // A lane that escapes in this step ends with the step count even if it also closed a cycle.
+            periodic &= ~escaped;
+            if (escaped != 0 || periodic != 0) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    if ((escaped & (1L << lane)) != 0) {
+                        result[lane] = step;
+                        if (fractions != null) {
+                            fractions[index + lane] = EscapeTimeKernel.fraction(zr.lane(lane), zi.lane(lane),
+                                    crs[lane], cis);
+                        }
+                    }
+                }
+                active = retirePeriodic(periodic, active & ~escaped, step, maxSteps, result);
+                if (active == 0) {
+                    return;
+                }
+                activeMask = VectorMask.fromLong(SPECIES, active);
+            }
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            if ((active & (1L << lane)) != 0) {
+                result[lane] = maxSteps;
+            }
+        }
+    }
+
+    private static long retirePeriodic(long periodic, long active, int step, int maxSteps, int[] result) {
+        for (int lane = 0; periodic != 0; lane++, periodic >>>= 1) {
+            if ((periodic & 1) != 0) {
+                result[lane] = maxSteps;
+                active &= ~(1L << lane);
+                EscapeTimeKernel.saved(maxSteps - step - 1);
+            }
+        }
+        return active;
+    }
+
+}
@@ -0,0 +1,130 @@
+package net.euhaus.n.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Immutable bounds of a view in {@link BigDecimal}, so that repeated zooms keep every digit no matter which engine
+ * draws them. {@link #createMandelbrot(int)} picks the cheapest engine whose precision still resolves the view.
+ */
+public final class Viewport {
+
+    public static final Viewport DEFAULT = new Viewport(BigDecimal.valueOf(-2.0), BigDecimal.valueOf(1.0),
+            BigDecimal.valueOf(-1.5), BigDecimal.valueOf(1.5));
+
+    // Smallest span, relative to the coordinates, that each engine still resolves to well below a pixel.
+    static final double IEEE754_LIMIT = 1e-12;
+
+    static final double DOUBLE_DOUBLE_LIMIT = 1e-27;
+
+    private static final int GUARD_DIGITS = 20;
+
+    private final BigDecimal minR;
+
+    private final BigDecimal maxR;
+
+    private final BigDecimal minIm;
+
+    private final BigDecimal maxIm;
+
+    public Viewport(BigDecimal minR, BigDecimal maxR, BigDecimal minIm, BigDecimal maxIm) {
+        this.minR = minR;
+        this.maxR = maxR;
+        this.minIm = minIm;
+        this.maxIm = maxIm;
+    }
+
+    /**
+     * The part of this view under the pixel rectangle {@code (x, y, w, h)} of a {@code width x height} canvas.
+     */
+    public Viewport zoom(double x, double y, double w, double h, double width, double height) {
+        MathContext mc = contextFor(getSpan());
+        BigDecimal spanR = maxR.subtract(minR);
+        BigDecimal spanIm = maxIm.subtract(minIm);
+        return new Viewport(
+                rescale(x / width, minR, spanR, mc), rescale((x + w) / width, minR, spanR, mc),
+                rescale(y / height, minIm, spanIm, mc), rescale((y + h) / height, minIm, spanIm, mc));
+    }
+
+    /**
+     * This view shrunk by {@code factor} toward the point {@code (r, im)}, which keeps its place on the canvas.
+     */
+    public Viewport zoom(BigDecimal r, BigDecimal im, double factor) {
+        if (!(factor > 0.0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("zoom factor must be positive: " + factor);
+        }
+        MathContext mc = contextFor(getSpan());
+        BigDecimal f = new BigDecimal(factor);
+        return new Viewport(
+                minR.subtract(r).divide(f, mc).add(r, mc), maxR.subtract(r).divide(f, mc).add(r, mc),
+                minIm.subtract(im).divide(f, mc).add(im, mc), maxIm.subtract(im).divide(f, mc).add(im, mc));
+    }
+
+    private static BigDecimal rescale(double fraction, BigDecimal min, BigDecimal span, MathContext mc) {
+        return new BigDecimal(fraction).multiply(span, mc).add(min, mc);
+    }
+
+    // Enough digits for the span itself plus guard digits, like the reference orbit of MandelbrotPerturbation.
+    private static MathContext contextFor(BigDecimal span) {
+        if (span.signum() == 0) {
+            return new MathContext(GUARD_DIGITS);
+        }
+        int magnitude = span.precision() - span.scale() - 1;
+        return new MathContext(Math.max(GUARD_DIGITS, GUARD_DIGITS - magnitude));
+    }
+
+    /**
+     * The larger of the two spans.
+     */
+    public BigDecimal getSpan() {
+        return maxR.subtract(minR).abs().max(maxIm.subtract(minIm).abs());
+    }
+
+    /**
+     * The span relative to the largest coordinate, i.e. the precision an engine needs to tell the bounds apart.
+     */
+    public double getRelativeSpan() {
+        double magnitude = Math.max(Math.max(Math.abs(minR.doubleValue()), Math.abs(maxR.doubleValue())),
+                Math.max(Math.abs(minIm.doubleValue()), Math.abs(maxIm.doubleValue())));
+        return getSpan().doubleValue() / Math.max(1.0, magnitude);
+    }
+
+    /**
+     * {@link MandelbrotIEEE754} while doubles resolve the view, {@link MandelbrotDoubleDouble} below that and
+     * {@link MandelbrotPerturbation} once double-double runs out as well.
+     */
+    public Mandelbrot<?, ?> createMandelbrot(int maxSteps) {
+        double relativeSpan = getRelativeSpan();
+        if (relativeSpan >= IEEE754_LIMIT) {
+            return new MandelbrotIEEE754(minR.doubleValue(), maxR.doubleValue(),
+                    minIm.doubleValue(), maxIm.doubleValue(), maxSteps);
+        }
+        if (relativeSpan >= DOUBLE_DOUBLE_LIMIT) {
+            return new MandelbrotDoubleDouble(DoubleDouble.valueOf(minR), DoubleDouble.valueOf(maxR),
+                    DoubleDouble.valueOf(minIm), DoubleDouble.valueOf(maxIm), maxSteps);
+        }
+        return new MandelbrotPerturbation(minR, maxR, minIm, maxIm, maxSteps);
+    }
+
+    public BigDecimal getMinR() {
+        return minR;
+    }
+
+    public BigDecimal getMaxR() {
+        return maxR;
+    }
+
+    public BigDecimal getMinIm() {
+        return minIm;
+    }
+
+    public BigDecimal getMaxIm() {
+        return maxIm;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + minR + ", " + maxR + "] x [" + minIm + ", " + maxIm + "]";
+    }
+
+}
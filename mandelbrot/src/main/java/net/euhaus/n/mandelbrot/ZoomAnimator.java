@@ -0,0 +1,360 @@
+package net.euhaus.n.mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Renders a zoom toward a point as a numbered sequence of PNG frames, each one {@code zoom} times smaller than the one
+ * before and shrunk about the target, which therefore stays on the same pixel throughout.
+ *
+ * Every frame after the first is seeded from the one before: pixel {@code (x, y)} lies between four pixels of the
+ * previous frame, and if all four are inside the set, or their smooth counts differ by at most
+ * {@value #SMOOTH_TOLERANCE}, the pixel is interpolated from them instead of iterated. Only the pixels whose sources
+ * disagree, fall outside the previous frame or were themselves interpolated {@value #MAX_REUSE_AGE} times in a row are
+ * computed, in row runs on all cores of the {@link TileScheduler}. The age limit bounds how long a feature that
+ * slipped between the sampled pixels can stay missing. Interpolated pixels carry smooth counts only, so their integer
+ * count may be one off; the frames are colored from count plus fraction, which is continuous.
+ *
+ * Coloring happens on the computing thread, but PNG encoding, the slower part, runs on separate threads fed through a
+ * queue of {@value #FRAMES_IN_FLIGHT} frames, so the next frame is computed while the previous ones are written and at
+ * most that many colored frames are held besides the two frames of counts.
+ */
+public class ZoomAnimator {
+
+    /**
+     * How many frames in a row a pixel may be interpolated from the previous one before it is computed again.
+     */
+    public static final int MAX_REUSE_AGE = 8;
+
+    /**
+     * How far apart, in iterations, the smooth counts of the four source pixels may be for a pixel to be interpolated.
+     */
+    public static final double SMOOTH_TOLERANCE = 1.0;
+
+    private static final int FRAMES_IN_FLIGHT = 4;
+
+    // Pixels to compute that are at most this far apart in a row are computed together with the ones between them,
+    // which costs less than splitting the run for the row kernel.
+    private static final int MAX_RUN_GAP = 8;
+
+    private final TileScheduler tileScheduler;
+
+    private final int encoders;
+
+    private long computedPixels;
+
+    public ZoomAnimator(TileScheduler tileScheduler, int encoders) {
+        if (encoders < 1) {
+            throw new IllegalArgumentException("number of encoder threads must be positive: " + encoders);
+        }
+        this.tileScheduler = tileScheduler;
+        this.encoders = encoders;
+    }
+
+    /**
+     * Writes {@code frames} frames of {@code width x height} pixels to {@code paths.apply(frame)}, the first showing
+     * {@code start} and each following one zoomed in by {@code zoom} toward {@code (targetR, targetIm)}, all with
+     * {@code maxSteps} iterations. {@code onFrame} is called from an encoder thread with the number of every frame
+     * written. Frames that would start after {@code cancelled} turned true are neither computed nor written.
+     */
+    public void animate(Viewport start, BigDecimal targetR, BigDecimal targetIm, double zoom, int frames,
+                        int width, int height, int maxSteps, Colorizer colorizer, IntFunction<Path> paths,
+                        BooleanSupplier cancelled, IntConsumer onFrame) throws IOException {
+        if (!(zoom > 1.0) || Double.isInfinite(zoom)) {
+            throw new IllegalArgumentException("zoom factor must be greater than 1: " + zoom);
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("image must not be empty: " + width + "x" + height);
+        }
+        // The target pixel, fixed for all frames; it may lie outside the image.
+        double targetX = width * targetR.subtract(start.getMinR())
+                .divide(start.getMaxR().subtract(start.getMinR()), MathContext.DECIMAL64).doubleValue();
+        double targetY = height * targetIm.subtract(start.getMinIm())
+                .divide(start.getMaxIm().subtract(start.getMinIm()), MathContext.DECIMAL64).doubleValue();
+
+        BlockingQueue<int[]> free = new ArrayBlockingQueue<>(FRAMES_IN_FLIGHT);
+        for (int i = 0; i < FRAMES_IN_FLIGHT; i++) {
+            free.add(new int[width * height]);
+        }
+        BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(FRAMES_IN_FLIGHT + encoders);
+        Encoder[] encoderThreads = new Encoder[encoders];
+        for (int i = 0; i < encoders; i++) {
+            encoderThreads[i] = new Encoder(queue, free, width, height, paths, onFrame);
+            encoderThreads[i].start();
+        }
+
+        Buffers previous = new Buffers(width * height);
+        Buffers current = new Buffers(width * height);
+        Runs runs = new Runs(width * height);
+        Viewport viewport = start;
+        try {
+            for (int frame = 0; frame < frames && !cancelled.getAsBoolean() && !failed(encoderThreads); frame++) {
+                Mandelbrot<?, ?> view = viewport.createMandelbrot(maxSteps);
+                if (frame == 0) {
+                    tileScheduler.render(view, current.steps, current.fractions, 0, 0, width, height, width, height,
+                            RenderMode.PER_PIXEL, cancelled);
+                    computedPixels += (long) width * height;
+                } else {
+                    reproject(view, previous, current, runs, zoom, targetX, targetY, width, height, maxSteps,
+                            cancelled);
+                }
+                if (cancelled.getAsBoolean()) {
+                    break;
+                }
+                int[] argb = free.take();
+                colorizer.colorize(current.steps, current.fractions, argb, width * height);
+                queue.put(new Frame(frame, argb));
+
+                Buffers swap = previous;
+                previous = current;
+                current = swap;
+                viewport = viewport.zoom(targetR, targetIm, zoom);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Encoder encoder : encoderThreads) {
+                encoder.finish();
+            }
+        }
+        for (Encoder encoder : encoderThreads) {
+            if (encoder.failure != null) {
+                throw encoder.failure;
+            }
+        }
+    }
+
+    /**
+     * Number of pixels iterated by the animations of this animator so far, as opposed to interpolated.
+     */
+    public long getComputedPixels() {
+        return computedPixels;
+    }
+
+    private void reproject(Mandelbrot<?, ?> view, Buffers previous, Buffers current, Runs runs, double zoom,
+                           double targetX, double targetY, int width, int height, int maxSteps,
+                           BooleanSupplier cancelled) {
+        int[] steps = current.steps;
+        float[] fractions = current.fractions;
+        byte[] ages = current.ages;
+        int[] previousSteps = previous.steps;
+        float[] previousFractions = previous.fractions;
+        byte[] previousAges = previous.ages;
+        int count = 0;
+        double scale = 1.0 / zoom;
+        for (int y = 0; y < height; y++) {
+            double sourceY = targetY + (y - targetY) * scale;
+            int y0 = (int) Math.floor(sourceY);
+            double v = sourceY - y0;
+            // The open run of this row ends at the last pixel to compute seen so far.
+            int runStart = -1;
+            int runEnd = -1;
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                double sourceX = targetX + (x - targetX) * scale;
+                int x0 = (int) Math.floor(sourceX);
+                boolean compute = x0 < 0 || y0 < 0 || x0 + 1 >= width || y0 + 1 >= height;
+                if (!compute) {
+                    int a = y0 * width + x0;
+                    int b = a + 1;
+                    int c = a + width;
+                    int d = c + 1;
+                    int age = Math.max(Math.max(previousAges[a], previousAges[b]),
+                            Math.max(previousAges[c], previousAges[d]));
+                    int interior = (previousSteps[a] >= maxSteps ? 1 : 0) + (previousSteps[b] >= maxSteps ? 1 : 0)
+                            + (previousSteps[c] >= maxSteps ? 1 : 0) + (previousSteps[d] >= maxSteps ? 1 : 0);
+                    if (age >= MAX_REUSE_AGE || interior != 0 && interior != 4) {
+                        compute = true;
+                    } else if (interior == 4) {
+                        steps[index] = maxSteps;
+                        fractions[index] = 0.0f;
+                        ages[index] = (byte) (age + 1);
+                    } else {
+                        double sa = previousSteps[a] + previousFractions[a];
+                        double sb = previousSteps[b] + previousFractions[b];
+                        double sc = previousSteps[c] + previousFractions[c];
+                        double sd = previousSteps[d] + previousFractions[d];
+                        double spread = Math.max(Math.max(sa, sb), Math.max(sc, sd))
+                                - Math.min(Math.min(sa, sb), Math.min(sc, sd));
+                        compute = !(spread <= SMOOTH_TOLERANCE);
+                        if (!compute) {
+                            double u = sourceX - x0;
+                            double smooth = (1.0 - v) * ((1.0 - u) * sa + u * sb) + v * ((1.0 - u) * sc + u * sd);
+                            int step = (int) Math.floor(smooth);
+                            steps[index] = step;
+                            fractions[index] = (float) (smooth - step);
+                            ages[index] = (byte) (age + 1);
+                        }
+                    }
+                }
+                if (compute) {
+                    if (runStart >= 0 && x - runEnd > MAX_RUN_GAP) {
+                        count = runs.add(count, runStart, y, runEnd + 1 - runStart);
+                        runStart = -1;
+                    }
+                    if (runStart < 0) {
+                        runStart = x;
+                    }
+                    runEnd = x;
+                }
+            }
+            if (runStart >= 0) {
+                count = runs.add(count, runStart, y, runEnd + 1 - runStart);
+            }
+        }
+
+        tileScheduler.renderRuns(view, steps, fractions, runs.xs, runs.ys, runs.lengths, count, width, height,
+                cancelled);
+        for (int i = 0; i < count; i++) {
+            int index = runs.ys[i] * width + runs.xs[i];
+            Arrays.fill(ages, index, index + runs.lengths[i], (byte) 0);
+            computedPixels += runs.lengths[i];
+        }
+    }
+
+    private static boolean failed(Encoder[] encoders) {
+        for (Encoder encoder : encoders) {
+            if (encoder.failure != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Counts, fractions and reuse ages of one frame.
+    private static final class Buffers {
+
+        final int[] steps;
+
+        final float[] fractions;
+
+        final byte[] ages;
+
+        Buffers(int pixels) {
+            steps = new int[pixels];
+            fractions = new float[pixels];
+            ages = new byte[pixels];
+        }
+    }
+
+    // The row runs of a frame that must be computed.
+    private static final class Runs {
+
+        final int[] xs;
+
+        final int[] ys;
+
+        final int[] lengths;
+
+        Runs(int pixels) {
+            xs = new int[pixels];
+            ys = new int[pixels];
+            lengths = new int[pixels];
+        }
+
+        int add(int count, int x, int y, int length) {
+            xs[count] = x;
+            ys[count] = y;
+            lengths[count] = length;
+            return count + 1;
+        }
+    }
+
+    private static final class Frame {
+
+        static final Frame END = new Frame(-1, null);
+
+        final int number;
+
+        final int[] argb;
+
+        Frame(int number, int[] argb) {
+            this.number = number;
+            this.argb = argb;
+        }
+    }
+
+    private static final class Encoder extends Thread {
+
+        private final BlockingQueue<Frame> queue;
+
+        private final BlockingQueue<int[]> free;
+
+        private final int width;
+
+        private final int height;
+
+        private final IntFunction<Path> paths;
+
+        private final IntConsumer onFrame;
+
+        private volatile IOException failure;
+
+        Encoder(BlockingQueue<Frame> queue, BlockingQueue<int[]> free, int width, int height, IntFunction<Path> paths,
+                IntConsumer onFrame) {
+            super("frame-encoder");
+            setDaemon(true);
+            this.queue = queue;
+            this.free = free;
+            this.width = width;
+            this.height = height;
+            this.paths = paths;
+            this.onFrame = onFrame;
+        }
+
+        // After a failure the encoder keeps taking frames without writing them, so that the animation never waits
+        // for a buffer or a queue slot that no one will release.
+        @Override
+        public void run() {
+            try {
+                for (Frame frame = queue.take(); frame != Frame.END; frame = queue.take()) {
+                    if (failure == null) {
+                        try {
+                            write(frame);
+                            if (onFrame != null) {
+                                onFrame.accept(frame.number);
+                            }
+                        } catch (IOException e) {
+                            failure = e;
+                        } catch (RuntimeException e) {
+                            failure = new IOException("frame " + frame.number + " could not be written", e);
+                        }
+                    }
+                    free.add(frame.argb);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(Frame frame) throws IOException {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(paths.apply(frame.number)));
+                 PngStreamWriter png = new PngStreamWriter(out, width, height)) {
+                for (int y = 0; y < height; y++) {
+                    png.writeRow(frame.argb, y * width);
+                }
+            }
+        }
+
+        void finish() {
+            try {
+                queue.put(Frame.END);
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}